@@ -0,0 +1,97 @@
+package benchmarks;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import dev.morphia.Datastore;
+import dev.morphia.Morphia;
+import features.revenue.Sale;
+import features.revenue.SaleCodec;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding stored sales with the hand-written SaleCodec against Morphia's mapping codec
+ * Both read the same pre-encoded BSON documents, so no server is needed
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class CodecDecodeBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+    
+    private final DecoderContext decoderContext = DecoderContext.builder().build();
+    private MongoClient client;
+    private Codec<Sale> saleCodec;
+    private Codec<Sale> morphiaCodec;
+    private byte[][] documents;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        saleCodec = new SaleCodec();
+        
+        // The client only connects on the first operation, mapping needs no server
+        client = MongoClients.create();
+        Datastore datastore = Morphia.createDatastore(client, "benchmark");
+        datastore.getMapper().map(Sale.class);
+        morphiaCodec = datastore.getCollection(Sale.class).getCodecRegistry().get(Sale.class);
+        
+        List<Sale> sales = SyntheticData.sales(rows);
+        documents = new byte[sales.size()][];
+        for (int i = 0; i < documents.length; i++) {
+            BasicOutputBuffer buffer = new BasicOutputBuffer();
+            try (BsonBinaryWriter writer = new BsonBinaryWriter(buffer)) {
+                saleCodec.encode(writer, sales.get(i), EncoderContext.builder().isEncodingCollectibleDocument(true).build());
+            }
+            documents[i] = buffer.toByteArray();
+        }
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        client.close();
+    }
+    
+    @Benchmark
+    public void decodeSaleCodec(Blackhole blackhole) {
+        decodeAll(saleCodec, blackhole);
+    }
+    
+    @Benchmark
+    public void decodeMorphia(Blackhole blackhole) {
+        decodeAll(morphiaCodec, blackhole);
+    }
+    
+    private void decodeAll(Codec<Sale> codec, Blackhole blackhole) {
+        for (byte[] document : documents) {
+            try (BsonBinaryReader reader = new BsonBinaryReader(ByteBuffer.wrap(document))) {
+                blackhole.consume(codec.decode(reader, decoderContext));
+            }
+        }
+    }
+}
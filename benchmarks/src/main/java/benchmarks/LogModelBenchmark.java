@@ -0,0 +1,55 @@
+package benchmarks;
+
+import features.logsPage.Log;
+import features.logsPage.LogModel;
+import javafx.collections.ObservableList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Search and summary figures over the loaded logs
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class LogModelBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+    
+    private LogModel model;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        model = new LogModel(SyntheticData.logs(rows));
+    }
+    
+    @Benchmark
+    public ObservableList<Log> searchLogs() {
+        return model.searchLogs("deleted");
+    }
+    
+    @Benchmark
+    public int getActionsToday() {
+        return model.getActionsToday();
+    }
+    
+    @Benchmark
+    public String getMostCommonAction() {
+        return model.getMostCommonAction();
+    }
+}
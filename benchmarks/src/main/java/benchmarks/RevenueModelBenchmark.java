@@ -0,0 +1,110 @@
+package benchmarks;
+
+import features.revenue.RevenueModel;
+import features.revenue.RevenueStatistics;
+import features.revenue.Sale;
+import features.revenue.SaleQuery;
+import javafx.collections.ObservableList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filters, search and revenue aggregations over the loaded sales
+ * Ranges and SKUs are fixed per trial, so every row count answers the same question
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class RevenueModelBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+    
+    private RevenueModel model;
+    private LocalDate monthStart;
+    private LocalDate today;
+    private String sku;
+    private SaleQuery monthQuery;
+    private SaleQuery productQuery;
+    private ObservableList<Sale> month;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        model = new RevenueModel(SyntheticData.sales(rows));
+        today = LocalDate.now();
+        monthStart = today.minusDays(29);
+        sku = SyntheticData.sku(42);
+        monthQuery = new SaleQuery(monthStart, today, null, null);
+        productQuery = new SaleQuery(null, null, sku, null);
+        month = model.filterByDateRange(monthStart, today);
+        // Build the sales columns outside the measured calls
+        model.getColumns();
+    }
+    
+    @Benchmark
+    public ObservableList<Sale> filterByDateRange() {
+        return model.filterByDateRange(monthStart, today);
+    }
+    
+    @Benchmark
+    public ObservableList<Sale> filterByProduct() {
+        return model.filterByProduct(sku);
+    }
+    
+    @Benchmark
+    public ObservableList<Sale> searchSales() {
+        return model.searchSales("runner");
+    }
+    
+    /** The summary cards for a filtered list */
+    @Benchmark
+    public RevenueStatistics calculateStatisticsList() {
+        return model.calculateStatistics(month);
+    }
+    
+    @Benchmark
+    public RevenueStatistics calculateStatisticsDateRange() {
+        return model.calculateStatistics(monthQuery);
+    }
+    
+    @Benchmark
+    public RevenueStatistics calculateStatisticsProduct() {
+        return model.calculateStatistics(productQuery);
+    }
+    
+    @Benchmark
+    public Map<String, RevenueStatistics> calculateStatisticsByProduct() {
+        return model.calculateStatisticsByProduct(monthQuery);
+    }
+    
+    @Benchmark
+    public double calculateTotalRevenue() {
+        return model.calculateTotalRevenue(model.getSales());
+    }
+    
+    @Benchmark
+    public double calculateTotalProfit() {
+        return model.calculateTotalProfit(model.getSales());
+    }
+    
+    @Benchmark
+    public double calculateAverageMargin() {
+        return model.calculateAverageMargin(model.getSales());
+    }
+}
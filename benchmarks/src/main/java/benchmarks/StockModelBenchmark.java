@@ -0,0 +1,78 @@
+package benchmarks;
+
+import features.stock.Product;
+import features.stock.ProductAttribute;
+import features.stock.StockModel;
+import javafx.collections.ObservableList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Search, attribute filters and stock value totals over the loaded products
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class StockModelBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+    
+    private StockModel model;
+    private String rareSku;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        model = new StockModel(SyntheticData.products(rows));
+        rareSku = SyntheticData.sku(rows / 2).toLowerCase();
+    }
+    
+    /** A brand name, matching about one product in eight */
+    @Benchmark
+    public ObservableList<Product> searchProductsCommon() {
+        return model.searchProducts("nike");
+    }
+    
+    /** A full SKU, matching one product */
+    @Benchmark
+    public ObservableList<Product> searchProductsRare() {
+        return model.searchProducts(rareSku);
+    }
+    
+    /** One brand by its dictionary code, matching about one product in eight */
+    @Benchmark
+    public ObservableList<Product> filterByBrand() {
+        return model.filterByAttribute(ProductAttribute.BRAND, "Nike");
+    }
+    
+    /** Values for the material filter, grouped on dictionary codes */
+    @Benchmark
+    public Map<String, Integer> countByMaterial() {
+        return model.countByAttribute(ProductAttribute.MATERIAL);
+    }
+    
+    @Benchmark
+    public double calculateTotalValuePkr() {
+        return model.calculateTotalValuePkr(model.getProducts());
+    }
+    
+    @Benchmark
+    public double calculateTotalValueGbp() {
+        return model.calculateTotalValueGbp(model.getProducts());
+    }
+}
@@ -0,0 +1,127 @@
+package benchmarks;
+
+import features.logsPage.Log;
+import features.revenue.RevenueModel;
+import features.revenue.Sale;
+import features.stock.Product;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Seeded generators for products, sales and logs shaped like the real collections
+ * The same row count always gives the same rows, so runs can be compared
+ */
+final class SyntheticData {
+    /** Sales are spread over this many days up to today */
+    static final int SALE_DAYS = 3 * 365;
+    /** Number of distinct SKUs the sales refer to */
+    static final int SKU_COUNT = 2000;
+    
+    private static final long SEED = 20240101L;
+    private static final String[] BRANDS = {"Nike", "Adidas", "Puma", "Reebok", "New Balance", "Asics", "Vans", "Converse"};
+    private static final String[] NAMES = {"Runner", "Trainer", "Hoodie", "Track Top", "Joggers", "Tee", "Cap", "Jacket"};
+    private static final String[] SIZES = {"XS", "S", "M", "L", "XL", "UK 7", "UK 8", "UK 9", "UK 10"};
+    private static final String[] COLORS = {"Black", "White", "Grey", "Navy", "Red", "Green", "Beige"};
+    private static final String[] MATERIALS = {"Cotton", "Polyester", "Leather", "Suede", "Mesh", "Fleece"};
+    private static final String[] ACTIONS = {"Added", "Edited", "Deleted"};
+    private static final String[] MODULES = {"Stock", "Revenue"};
+    private static final DateTimeFormatter TIMESTAMP_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final ZoneId PKT_ZONE = ZoneId.of("Asia/Karachi");
+    private static final ZoneId UK_ZONE = ZoneId.of("Europe/London");
+    
+    private SyntheticData() {
+    }
+    
+    /**
+     * Build the SKU of the n-th product
+     * @param n Product number
+     * @return The SKU
+     */
+    static String sku(int n) {
+        return String.format("EF-%06d", n);
+    }
+    
+    /**
+     * Generate products with one SKU each
+     * @param rows Number of products
+     * @return The products
+     */
+    static List<Product> products(int rows) {
+        Random random = new Random(SEED);
+        LocalDate today = LocalDate.now();
+        List<Product> products = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            String brand = pick(random, BRANDS);
+            products.add(new Product(sku(i), brand + " " + pick(random, NAMES), pick(random, SIZES),
+                    pick(random, COLORS), pick(random, MATERIALS), brand,
+                    500 + random.nextInt(20000), random.nextInt(50), random.nextInt(200),
+                    today.minusDays(random.nextInt(SALE_DAYS)).toString()));
+        }
+        return products;
+    }
+    
+    /**
+     * Generate sales over SKU_COUNT products and the last SALE_DAYS days, in date order
+     * @param rows Number of sales
+     * @return The sales
+     */
+    static List<Sale> sales(int rows) {
+        Random random = new Random(SEED);
+        LocalDate first = LocalDate.now().minusDays(SALE_DAYS - 1);
+        double rate = RevenueModel.getExchangeRate();
+        List<Sale> sales = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            int product = random.nextInt(SKU_COUNT);
+            double baseCostPkr = 500 + random.nextInt(20000);
+            double baseCostGbp = baseCostPkr / rate;
+            double salePrice = Math.round((baseCostGbp * (1.2 + random.nextDouble())) * 100.0) / 100.0;
+            double shipping = 2.5 + random.nextInt(4);
+            double feePercent = 10.0 + random.nextInt(6);
+            double fee = salePrice * feePercent / 100.0;
+            double netProfit = RevenueModel.calculateNetProfit(salePrice, baseCostGbp, shipping, feePercent);
+            LocalDate saleDate = first.plusDays((long) i * SALE_DAYS / rows);
+            sales.add(new Sale(String.valueOf(i + 1), sku(product), pick(random, BRANDS) + " " + pick(random, NAMES),
+                    baseCostPkr, baseCostGbp, salePrice, shipping, feePercent, fee, netProfit,
+                    RevenueModel.calculateProfitMargin(netProfit, salePrice), saleDate.toString()));
+        }
+        return sales;
+    }
+    
+    /**
+     * Generate logs over the last year, newest first like the loaded log list
+     * @param rows Number of logs
+     * @return The logs
+     */
+    static List<Log> logs(int rows) {
+        Random random = new Random(SEED);
+        long now = System.currentTimeMillis();
+        long yearMillis = 365L * 24 * 60 * 60 * 1000;
+        List<Log> logs = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            long timeMillis = now - (long) ((double) i / rows * yearMillis);
+            Instant time = Instant.ofEpochMilli(timeMillis);
+            String module = pick(random, MODULES);
+            boolean stock = "Stock".equals(module);
+            String identifier = stock ? sku(random.nextInt(SKU_COUNT)) : String.valueOf(random.nextInt(rows) + 1);
+            Log log = new Log(pick(random, ACTIONS), module, stock ? "Product" : "Sale", identifier,
+                    "Synthetic change to " + identifier,
+                    Log.TIMESTAMP_FORMATTER.format(time),
+                    TIMESTAMP_FORMATTER.format(time.atZone(PKT_ZONE)),
+                    TIMESTAMP_FORMATTER.format(time.atZone(UK_ZONE)));
+            log.setCreatedAt(new Date(timeMillis));
+            logs.add(log);
+        }
+        return logs;
+    }
+    
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
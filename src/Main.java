@@ -4,7 +4,9 @@ import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.image.Image;
 import javafx.stage.Stage;
+import javafx.stage.WindowEvent;
 import core.Connection;
+import core.LoggingService;
 /**
  * Main application class following MVC pattern
  * Initializes Model, View, and Controller and connects them
@@ -33,8 +35,10 @@ public class Main extends Application {
         Scene scene = new Scene(root, 500, 500);
         primaryStage.setScene(scene);
         primaryStage.setResizable(false);
-        primaryStage.setOnCloseRequest(event -> {
-            // Close database connection on application shutdown
+        // Added as a handler rather than setOnCloseRequest so pages can set their own close request
+        primaryStage.addEventHandler(WindowEvent.WINDOW_CLOSE_REQUEST, event -> {
+            // Flush queued audit logs, then close database connection on application shutdown
+            LoggingService.shutdown();
             Connection.getInstance().close();
         });
         primaryStage.show();
@@ -0,0 +1,73 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shared value table that turns repeated strings into small int codes
+ * Every distinct value is stored once and gets the next free code, so many objects with the
+ * same attribute value share one String instance and can be compared by code
+ */
+public class AttributeDictionary {
+    /** Code of a missing (null) value */
+    public static final int NO_CODE = -1;
+    
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+    
+    /**
+     * Get the code of a value, adding the value if it is new
+     * @param value The value
+     * @return Its code, or NO_CODE for null
+     */
+    public synchronized int encode(String value) {
+        if (value == null) {
+            return NO_CODE;
+        }
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = values.size();
+            codes.put(value, code);
+            values.add(value);
+        }
+        return code;
+    }
+    
+    /**
+     * Get the code of a value without adding it
+     * @param value The value
+     * @return Its code, or NO_CODE if the value has never been encoded
+     */
+    public synchronized int lookup(String value) {
+        Integer code = value != null ? codes.get(value) : null;
+        return code != null ? code : NO_CODE;
+    }
+    
+    /**
+     * Get the shared instance of the value with a code
+     * @param code The code
+     * @return The value, or null for NO_CODE
+     */
+    public synchronized String decode(int code) {
+        return code == NO_CODE ? null : values.get(code);
+    }
+    
+    /**
+     * Get the number of distinct values, codes run from 0 to size() - 1
+     * @return Value count
+     */
+    public synchronized int size() {
+        return values.size();
+    }
+    
+    /**
+     * Get all values in code order
+     * @return Copy of the value table
+     */
+    public synchronized List<String> values() {
+        return Collections.unmodifiableList(new ArrayList<>(values));
+    }
+}
@@ -0,0 +1,68 @@
+package core;
+
+/**
+ * Running double total with Neumaier compensated summation
+ * Keeps the rounding error of each addition in a separate term, so a total that is
+ * updated by many small additions and subtractions doesn't drift from the exact sum
+ */
+public class CompensatedSum {
+    private double sum;
+    private double compensation;
+    
+    /**
+     * Add a value to the total
+     * @param value The value to add
+     */
+    public void add(double value) {
+        double t = sum + value;
+        if (Math.abs(sum) >= Math.abs(value)) {
+            compensation += (sum - t) + value;
+        } else {
+            compensation += (value - t) + sum;
+        }
+        sum = t;
+    }
+    
+    /**
+     * Subtract a value from the total
+     * @param value The value to subtract
+     */
+    public void subtract(double value) {
+        add(-value);
+    }
+    
+    /**
+     * Get the current total
+     * @return The compensated total
+     */
+    public double get() {
+        return sum + compensation;
+    }
+    
+    /**
+     * Set the total back to zero
+     */
+    public void reset() {
+        sum = 0.0;
+        compensation = 0.0;
+    }
+    
+    /**
+     * Add a value to one slot of an array of totals, for grouped sums kept in parallel arrays
+     * The slot's total is sums[slot] + compensations[slot]
+     * @param sums Running totals
+     * @param compensations Compensation terms, same length as sums
+     * @param slot Index of the total to add to
+     * @param value The value to add
+     */
+    public static void add(double[] sums, double[] compensations, int slot, double value) {
+        double sum = sums[slot];
+        double t = sum + value;
+        if (Math.abs(sum) >= Math.abs(value)) {
+            compensations[slot] += (sum - t) + value;
+        } else {
+            compensations[slot] += (value - t) + sum;
+        }
+        sums[slot] = t;
+    }
+}
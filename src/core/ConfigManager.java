@@ -2,6 +2,7 @@ package core;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
 import javax.xml.parsers.DocumentBuilder;
@@ -10,33 +11,49 @@ import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Utility class for managing application configuration
  * Reads and writes settings to config.xml
+ * The file is parsed once into an immutable snapshot which getters read from memory.
+ * The snapshot is swapped atomically when settings are saved or the file changes on disk.
  */
 public class ConfigManager {
+    public static final String CONNECTION_STRING = "connectionString";
+    public static final String GBP_TO_PKR_RATE = "gbpToPkrRate";
+    public static final String PLATFORM_FEES = "platformFees";
+    public static final String LOG_PAGE_SIZE = "logPageSize";
+    public static final String LOG_OVERFLOW_POLICY = "logOverflowPolicy";
+    public static final String LOG_RETENTION_DAYS = "logRetentionDays";
+    public static final String TRANSACTION_ID_BLOCK_SIZE = "transactionIdBlockSize";
+    public static final String VERSION_CHECK = "versionCheck";
+    public static final String ENTITY_CODECS = "entityCodecs";
+    
     private static final String CONFIG_PATH = "src/core/config.xml";
     private static final double DEFAULT_GBP_TO_PKR_RATE = 350.0;
     private static final String DEFAULT_PLATFORM_FEES = "15,20,25";
+    private static final int DEFAULT_LOG_PAGE_SIZE = 200;
+    
+    private static volatile Snapshot snapshot;
+    private static Thread watcherThread;
     
     /**
      * Get the database connection string from config.xml
      * @return Connection string, or null if missing or empty
      */
     public static String getConnectionString() {
-        try {
-            Document doc = loadConfig();
-            NodeList nodeList = doc.getElementsByTagName("connectionString");
-            if (nodeList.getLength() > 0) {
-                String connectionString = nodeList.item(0).getTextContent().trim();
-                return connectionString.isEmpty() ? null : connectionString;
-            }
-        } catch (Exception e) {
-            System.err.println("Error reading connection string: " + e.getMessage());
-        }
-        return null;
+        return snapshot().connectionString;
     }
     
     /**
@@ -44,19 +61,7 @@ public class ConfigManager {
      * @return Exchange rate, default 350.0 if missing
      */
     public static double getGbpToPkrRate() {
-        try {
-            Document doc = loadConfig();
-            NodeList nodeList = doc.getElementsByTagName("gbpToPkrRate");
-            if (nodeList.getLength() > 0) {
-                String rateStr = nodeList.item(0).getTextContent().trim();
-                if (!rateStr.isEmpty()) {
-                    return Double.parseDouble(rateStr);
-                }
-            }
-        } catch (Exception e) {
-            System.err.println("Error reading exchange rate: " + e.getMessage());
-        }
-        return DEFAULT_GBP_TO_PKR_RATE;
+        return snapshot().gbpToPkrRate;
     }
     
     /**
@@ -64,19 +69,58 @@ public class ConfigManager {
      * @return Comma-separated platform fees string, default "15,20,25" if missing
      */
     public static String getPlatformFees() {
-        try {
-            Document doc = loadConfig();
-            NodeList nodeList = doc.getElementsByTagName("platformFees");
-            if (nodeList.getLength() > 0) {
-                String fees = nodeList.item(0).getTextContent().trim();
-                if (!fees.isEmpty()) {
-                    return fees;
-                }
-            }
-        } catch (Exception e) {
-            System.err.println("Error reading platform fees: " + e.getMessage());
-        }
-        return DEFAULT_PLATFORM_FEES;
+        return snapshot().platformFees;
+    }
+    
+    /**
+     * Get the number of log entries loaded per page from config.xml
+     * @return Page size, default 200 if missing or invalid
+     */
+    public static int getLogPageSize() {
+        return snapshot().logPageSize;
+    }
+    
+    /**
+     * Get the number of days after which MongoDB expires logs automatically
+     * @return Retention in days, 0 (disabled) if missing or invalid
+     */
+    public static int getLogRetentionDays() {
+        return snapshot().logRetentionDays;
+    }
+    
+    /**
+     * Get how many transaction IDs a terminal reserves per counter round trip
+     * @return Block size, default 1 (no reservation) if missing or invalid
+     */
+    public static int getTransactionIdBlockSize() {
+        return snapshot().transactionIdBlockSize;
+    }
+    
+    /**
+     * Check whether edits are rejected when the document changed since it was loaded
+     * When off, edits only overwrite the fields they change
+     * @return true if enabled, default false if missing
+     */
+    public static boolean isVersionCheckEnabled() {
+        return snapshot().versionCheck;
+    }
+    
+    /**
+     * Check whether entities are read and written with the hand-written BSON codecs
+     * Set to false to fall back to Morphia's mapping, takes effect on the next connection
+     * @return true unless set to false
+     */
+    public static boolean isEntityCodecsEnabled() {
+        return snapshot().entityCodecs;
+    }
+    
+    /**
+     * Get a raw setting from config.xml
+     * @param key The element name of the setting
+     * @return Trimmed value, or null if missing
+     */
+    public static String getValue(String key) {
+        return snapshot().values.get(key);
     }
     
     /**
@@ -84,25 +128,7 @@ public class ConfigManager {
      * @param connectionString The connection string to save
      */
     public static void setConnectionString(String connectionString) {
-        try {
-            Document doc = loadConfig();
-            Element root = doc.getDocumentElement();
-            
-            NodeList nodeList = doc.getElementsByTagName("connectionString");
-            Element connectionElement;
-            if (nodeList.getLength() > 0) {
-                connectionElement = (Element) nodeList.item(0);
-            } else {
-                connectionElement = doc.createElement("connectionString");
-                root.appendChild(connectionElement);
-            }
-            
-            connectionElement.setTextContent(connectionString != null ? connectionString : "");
-            saveConfig(doc);
-        } catch (Exception e) {
-            System.err.println("Error setting connection string: " + e.getMessage());
-            e.printStackTrace();
-        }
+        setValues(Collections.singletonMap(CONNECTION_STRING, connectionString != null ? connectionString : ""));
     }
     
     /**
@@ -110,80 +136,173 @@ public class ConfigManager {
      * @param rate The exchange rate to save
      */
     public static void setGbpToPkrRate(double rate) {
+        setValues(Collections.singletonMap(GBP_TO_PKR_RATE, String.valueOf(rate)));
+    }
+    
+    /**
+     * Set platform fees in config.xml
+     * @param fees Comma-separated platform fees string (e.g., "15,20,25")
+     */
+    public static void setPlatformFees(String fees) {
+        setValues(Collections.singletonMap(PLATFORM_FEES, fees != null ? fees : DEFAULT_PLATFORM_FEES));
+    }
+    
+    /**
+     * Set several settings in config.xml with a single write
+     * @param values Element names mapped to their new values
+     */
+    public static synchronized void setValues(Map<String, String> values) {
         try {
             Document doc = loadConfig();
             Element root = doc.getDocumentElement();
             
-            NodeList nodeList = doc.getElementsByTagName("gbpToPkrRate");
-            Element rateElement;
-            if (nodeList.getLength() > 0) {
-                rateElement = (Element) nodeList.item(0);
-            } else {
-                rateElement = doc.createElement("gbpToPkrRate");
-                root.appendChild(rateElement);
+            for (Map.Entry<String, String> entry : values.entrySet()) {
+                NodeList nodeList = doc.getElementsByTagName(entry.getKey());
+                Element element;
+                if (nodeList.getLength() > 0) {
+                    element = (Element) nodeList.item(0);
+                } else {
+                    element = doc.createElement(entry.getKey());
+                    root.appendChild(element);
+                }
+                element.setTextContent(entry.getValue() != null ? entry.getValue() : "");
             }
             
-            rateElement.setTextContent(String.valueOf(rate));
             saveConfig(doc);
+            snapshot = new Snapshot(readValues(doc));
         } catch (Exception e) {
-            System.err.println("Error setting exchange rate: " + e.getMessage());
+            System.err.println("Error saving settings: " + e.getMessage());
             e.printStackTrace();
         }
     }
     
     /**
-     * Set platform fees in config.xml
-     * @param fees Comma-separated platform fees string (e.g., "15,20,25")
+     * Re-read config.xml from disk, replacing the cached snapshot
      */
-    public static void setPlatformFees(String fees) {
+    public static synchronized void reload() {
         try {
-            Document doc = loadConfig();
-            Element root = doc.getDocumentElement();
+            snapshot = new Snapshot(readValues(loadConfig()));
+        } catch (Exception e) {
+            System.err.println("Error reading config: " + e.getMessage());
+            snapshot = new Snapshot(Collections.emptyMap());
+        }
+    }
+    
+    /**
+     * Get the current snapshot, parsing config.xml on first use
+     */
+    private static Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (ConfigManager.class) {
+                if (snapshot == null) {
+                    reload();
+                    startWatcher();
+                }
+                current = snapshot;
+            }
+        }
+        return current;
+    }
+    
+    /**
+     * Watch the config directory and reload the snapshot when config.xml changes
+     */
+    private static void startWatcher() {
+        if (watcherThread != null) {
+            return;
+        }
+        try {
+            Path configFile = Paths.get(CONFIG_PATH).toAbsolutePath();
+            Path configDir = configFile.getParent();
+            WatchService watchService = FileSystems.getDefault().newWatchService();
+            configDir.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
             
-            NodeList nodeList = doc.getElementsByTagName("platformFees");
-            Element feesElement;
-            if (nodeList.getLength() > 0) {
-                feesElement = (Element) nodeList.item(0);
-            } else {
-                feesElement = doc.createElement("platformFees");
-                root.appendChild(feesElement);
+            watcherThread = new Thread(() -> watchConfig(watchService, configFile.getFileName()), "config-watcher");
+            watcherThread.setDaemon(true);
+            watcherThread.start();
+        } catch (Exception e) {
+            System.err.println("Error watching config file: " + e.getMessage());
+        }
+    }
+    
+    private static void watchConfig(WatchService watchService, Path fileName) {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException e) {
+                return;
             }
             
-            feesElement.setTextContent(fees != null ? fees : DEFAULT_PLATFORM_FEES);
-            saveConfig(doc);
+            boolean changed = false;
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (fileName.equals(event.context())) {
+                    changed = true;
+                }
+            }
+            if (changed) {
+                reloadChangedFile();
+            }
+            if (!key.reset()) {
+                return; // Directory no longer accessible
+            }
+        }
+    }
+    
+    /**
+     * Swap in the snapshot of a config.xml edited outside the application
+     * Unlike loadConfig, a file that can't be parsed is left alone (it may be mid-write)
+     */
+    private static synchronized void reloadChangedFile() {
+        try {
+            snapshot = new Snapshot(readValues(parseConfigFile()));
         } catch (Exception e) {
-            System.err.println("Error setting platform fees: " + e.getMessage());
-            e.printStackTrace();
+            // Keep the previous snapshot until the file is valid again
         }
     }
     
+    /**
+     * Collect the text of every top-level setting element
+     */
+    private static Map<String, String> readValues(Document doc) {
+        Map<String, String> values = new HashMap<>();
+        NodeList children = doc.getDocumentElement().getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            Node node = children.item(i);
+            if (node.getNodeType() == Node.ELEMENT_NODE) {
+                values.put(node.getNodeName(), node.getTextContent().trim());
+            }
+        }
+        return values;
+    }
+    
     /**
      * Load config.xml document
      * Creates default structure if file doesn't exist
      */
     private static Document loadConfig() throws Exception {
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder builder = factory.newDocumentBuilder();
-        
         try {
-            Document doc = builder.parse(Paths.get(CONFIG_PATH).toFile());
-            doc.getDocumentElement().normalize();
-            return doc;
+            return parseConfigFile();
         } catch (Exception e) {
             // File doesn't exist or is invalid, create default structure
+            DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
             Document doc = builder.newDocument();
             Element root = doc.createElement("config");
             doc.appendChild(root);
             
-            Element connectionElement = doc.createElement("connectionString");
+            Element connectionElement = doc.createElement(CONNECTION_STRING);
             connectionElement.setTextContent("");
             root.appendChild(connectionElement);
             
-            Element rateElement = doc.createElement("gbpToPkrRate");
+            Element rateElement = doc.createElement(GBP_TO_PKR_RATE);
             rateElement.setTextContent(String.valueOf(DEFAULT_GBP_TO_PKR_RATE));
             root.appendChild(rateElement);
             
-            Element feesElement = doc.createElement("platformFees");
+            Element feesElement = doc.createElement(PLATFORM_FEES);
             feesElement.setTextContent(DEFAULT_PLATFORM_FEES);
             root.appendChild(feesElement);
             
@@ -192,6 +311,17 @@ public class ConfigManager {
         }
     }
     
+    /**
+     * Parse config.xml from disk
+     */
+    private static Document parseConfigFile() throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        DocumentBuilder builder = factory.newDocumentBuilder();
+        Document doc = builder.parse(Paths.get(CONFIG_PATH).toFile());
+        doc.getDocumentElement().normalize();
+        return doc;
+    }
+    
     /**
      * Save config.xml document
      */
@@ -202,5 +332,67 @@ public class ConfigManager {
         StreamResult result = new StreamResult(Paths.get(CONFIG_PATH).toFile());
         transformer.transform(source, result);
     }
+    
+    /**
+     * Immutable parsed view of config.xml
+     * Typed values are parsed once, falling back to defaults when missing or invalid
+     */
+    private static final class Snapshot {
+        private final Map<String, String> values;
+        private final String connectionString;
+        private final double gbpToPkrRate;
+        private final String platformFees;
+        private final int logPageSize;
+        private final int logRetentionDays;
+        private final int transactionIdBlockSize;
+        private final boolean versionCheck;
+        private final boolean entityCodecs;
+        
+        private Snapshot(Map<String, String> values) {
+            this.values = Collections.unmodifiableMap(new LinkedHashMap<>(values));
+            
+            String connection = values.get(CONNECTION_STRING);
+            this.connectionString = connection == null || connection.isEmpty() ? null : connection;
+            
+            String fees = values.get(PLATFORM_FEES);
+            this.platformFees = fees == null || fees.isEmpty() ? DEFAULT_PLATFORM_FEES : fees;
+            
+            double rate = DEFAULT_GBP_TO_PKR_RATE;
+            String rateStr = values.get(GBP_TO_PKR_RATE);
+            if (rateStr != null && !rateStr.isEmpty()) {
+                try {
+                    rate = Double.parseDouble(rateStr);
+                } catch (NumberFormatException e) {
+                    System.err.println("Error reading exchange rate: " + e.getMessage());
+                }
+            }
+            this.gbpToPkrRate = rate;
+            
+            this.logPageSize = readInt(values, LOG_PAGE_SIZE, DEFAULT_LOG_PAGE_SIZE, 1, "log page size");
+            this.logRetentionDays = readInt(values, LOG_RETENTION_DAYS, 0, 0, "log retention days");
+            this.transactionIdBlockSize = readInt(values, TRANSACTION_ID_BLOCK_SIZE, 1, 1, "transaction ID block size");
+            
+            this.versionCheck = Boolean.parseBoolean(values.get(VERSION_CHECK));
+            String codecs = values.get(ENTITY_CODECS);
+            this.entityCodecs = codecs == null || codecs.isEmpty() || Boolean.parseBoolean(codecs);
+        }
+        
+        /**
+         * Parse a whole-number setting, reporting an invalid value once per reload
+         * @return The value, or the default if it is missing, invalid or below the minimum
+         */
+        private static int readInt(Map<String, String> values, String key, int defaultValue, int min, String name) {
+            String text = values.get(key);
+            if (text == null || text.isEmpty()) {
+                return defaultValue;
+            }
+            try {
+                int value = Integer.parseInt(text);
+                return value >= min ? value : defaultValue;
+            } catch (NumberFormatException e) {
+                System.err.println("Error reading " + name + ": " + e.getMessage());
+                return defaultValue;
+            }
+        }
+    }
 }
-
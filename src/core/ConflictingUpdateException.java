@@ -0,0 +1,10 @@
+package core;
+
+/**
+ * Exception thrown when an edit is based on a copy of a document that someone else has since changed or deleted
+ */
+public class ConflictingUpdateException extends RuntimeException {
+    public ConflictingUpdateException(String entity) {
+        super(entity + " was changed or deleted by another user. Refresh and try again.");
+    }
+}
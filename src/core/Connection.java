@@ -1,9 +1,24 @@
 package core;
 
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.MongoWriteException;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
 import dev.morphia.Datastore;
 import dev.morphia.Morphia;
+import features.logsPage.Log;
+import features.logsPage.LogCodec;
+import features.logsPage.LogModel;
+import features.revenue.RevenueModel;
+import features.revenue.Sale;
+import features.revenue.SaleCodec;
+import features.stock.Product;
+import features.stock.ProductCodec;
+import org.bson.Document;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
 
 
 /**
@@ -16,6 +31,9 @@ public class Connection {
     private MongoClient mongoClient;
     private Datastore datastore;
     private String databaseName = "gym_db";
+    private Boolean transactionsSupported;
+    // Registry with the entity codecs, or null to map entities with Morphia
+    private CodecRegistry entityCodecs;
     
     /**
      * Private constructor to enforce singleton pattern
@@ -56,9 +74,16 @@ public class Connection {
             mongoClient = MongoClients.create(connectionString);
             datastore = Morphia.createDatastore(mongoClient, databaseName);
 
-            // Map packages containing entity classes
-            // datastore.getMapper().map(Member.class);
-            datastore.ensureIndexes();
+            // Map entity classes so their declared indexes are known
+            datastore.getMapper().map(Product.class, Sale.class, Log.class);
+            ensureIndexes();
+            
+            if (ConfigManager.isEntityCodecsEnabled()) {
+                // Driver defaults stay available for filters, updates and plain Documents
+                entityCodecs = CodecRegistries.fromRegistries(
+                        CodecRegistries.fromCodecs(new ProductCodec(), new SaleCodec(), new LogCodec()),
+                        MongoClientSettings.getDefaultCodecRegistry());
+            }
         } catch (Exception e) {
             System.err.println("Error initializing database connection: " + e.getMessage());
             e.printStackTrace();
@@ -67,6 +92,60 @@ public class Connection {
         }
     }
     
+    /**
+     * Create the indexes declared on the mapped entity classes
+     * Failures (e.g. duplicate SKUs already stored) are reported but don't drop the connection
+     */
+    public void ensureIndexes() {
+        if (datastore == null) {
+            return;
+        }
+        try {
+            datastore.ensureIndexes();
+        } catch (Exception e) {
+            System.err.println("Error creating indexes: " + e.getMessage());
+            e.printStackTrace();
+        }
+        
+        // Convert string sale dates from older versions and drop the index they replaced
+        RevenueModel.migrateSaleDates(datastore);
+        
+        // Optional TTL index so MongoDB expires old logs by itself
+        LogModel.applyAutomaticExpiry(datastore, ConfigManager.getLogRetentionDays());
+    }
+    
+    /**
+     * Check whether a write failed because it violated a unique index
+     * @param e The exception thrown by the write
+     * @return true if the error is a duplicate key error
+     */
+    public static boolean isDuplicateKeyError(Exception e) {
+        return e instanceof MongoWriteException
+                && ((MongoWriteException) e).getError().getCategory() == ErrorCategory.DUPLICATE_KEY;
+    }
+    
+    /**
+     * Check whether the server supports multi-document transactions
+     * Only replica sets and sharded clusters do, a standalone server doesn't.
+     * The answer is read from the server once and then cached
+     * @return true if transactions can be used
+     */
+    public boolean supportsTransactions() {
+        if (transactionsSupported == null) {
+            if (mongoClient == null) {
+                return false;
+            }
+            try {
+                Document hello = mongoClient.getDatabase("admin").runCommand(new Document("hello", 1));
+                transactionsSupported = hello.containsKey("setName") || "isdbgrid".equals(hello.getString("msg"));
+            } catch (Exception e) {
+                System.err.println("Error checking transaction support: " + e.getMessage());
+                transactionsSupported = false;
+            }
+        }
+        return transactionsSupported;
+    }
+    
     /**
      * Check if database connection is available
      * @return true if connected, false otherwise
@@ -93,6 +172,29 @@ public class Connection {
         return datastore;
     }
     
+    /**
+     * Get the collection of an entity class for reads and writes through the driver
+     * Uses the hand-written BSON codecs unless they are switched off in config.xml,
+     * in which case Morphia's mapping is used
+     * @param entityClass Product, Sale or Log
+     * @return The collection, or null if not connected
+     */
+    public <T> MongoCollection<T> getCollection(Class<T> entityClass) {
+        if (datastore == null) {
+            return null;
+        }
+        MongoCollection<T> collection = datastore.getCollection(entityClass);
+        return entityCodecs != null ? collection.withCodecRegistry(entityCodecs) : collection;
+    }
+    
+    /**
+     * Check whether entities are mapped with the hand-written BSON codecs
+     * @return true if the codecs are in use, false if Morphia maps them
+     */
+    public boolean usesEntityCodecs() {
+        return entityCodecs != null;
+    }
+    
     /**
      * Get the MongoDB Client instance
      * @return MongoClient instance, or null if not connected
@@ -0,0 +1,94 @@
+package core;
+
+import javafx.concurrent.Task;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+
+/**
+ * Background task that streams rows from a database cursor into a CSV file
+ * Rows are written as they arrive, so the whole dataset is never held in memory.
+ * Reports progress, can be cancelled (the partial file is deleted) and writes
+ * gzip output when the file name ends in .gz
+ * @param <T> Type of the exported rows
+ */
+public class CsvExportTask<T> extends Task<Long> {
+    private static final int PROGRESS_INTERVAL = 1000;
+    
+    /**
+     * Writes the fields of one row
+     */
+    public interface RowWriter<T> {
+        void write(T item, CsvWriter csv) throws IOException;
+    }
+    
+    private final File file;
+    private final String header;
+    private final Callable<? extends Iterator<T>> source;
+    private final Callable<Long> rowCount;
+    private final RowWriter<T> rowWriter;
+    
+    /**
+     * Create an export task
+     * @param file The file to write
+     * @param header Header line of the CSV
+     * @param source Opens the cursor to read rows from (called on the background thread)
+     * @param rowCount Returns the expected number of rows, used for progress
+     * @param rowWriter Writes one row's fields
+     */
+    public CsvExportTask(File file, String header, Callable<? extends Iterator<T>> source,
+                         Callable<Long> rowCount, RowWriter<T> rowWriter) {
+        this.file = file;
+        this.header = header;
+        this.source = source;
+        this.rowCount = rowCount;
+        this.rowWriter = rowWriter;
+    }
+    
+    /**
+     * Run a task on a daemon thread
+     * @param task The task to run
+     */
+    public static void start(Task<?> task) {
+        Thread thread = new Thread(task, "csv-export");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    @Override
+    protected Long call() throws Exception {
+        long expected = rowCount.call();
+        long rows = 0;
+        updateMessage("Exporting...");
+        
+        Iterator<T> cursor = source.call();
+        try (CsvWriter csv = CsvWriter.open(file)) {
+            csv.writeLine(header);
+            while (!isCancelled() && cursor.hasNext()) {
+                rowWriter.write(cursor.next(), csv);
+                csv.endRow();
+                rows++;
+                
+                if (rows % PROGRESS_INTERVAL == 0) {
+                    updateProgress(rows, Math.max(expected, rows));
+                    updateMessage("Exported " + rows + " of " + Math.max(expected, rows) + " rows");
+                }
+            }
+        } finally {
+            if (cursor instanceof AutoCloseable) {
+                ((AutoCloseable) cursor).close();
+            }
+        }
+        
+        if (isCancelled()) {
+            Files.deleteIfExists(file.toPath());
+            return rows;
+        }
+        updateProgress(rows, rows);
+        updateMessage("Exported " + rows + " rows");
+        return rows;
+    }
+}
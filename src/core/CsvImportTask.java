@@ -0,0 +1,332 @@
+package core;
+
+import javafx.concurrent.Task;
+
+import java.io.File;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * Background task that streams a CSV file into the database
+ * Rows are read in chunks, each chunk is validated in parallel, and the valid rows are
+ * written in batches by the model (unordered insertMany). Invalid rows and rows rejected
+ * by the database are collected into the report with their line numbers.
+ * Cancelling stops after the current chunk, rows already written are kept.
+ * @param <T> Type of the imported rows
+ */
+public class CsvImportTask<T> extends Task<CsvImportTask.Report> {
+    private static final int CHUNK_SIZE = 5000;
+    private static final int BATCH_SIZE = 1000;
+    private static final int MAX_REPORTED_ERRORS = 1000;
+    
+    /**
+     * Turns one record into an entity
+     * Throws IllegalArgumentException with a readable message if the row is invalid
+     */
+    public interface RowParser<T> {
+        T parse(List<String> fields);
+    }
+    
+    /**
+     * Writes a batch of entities to the database
+     * Returns the rejected rows as batch index to reason, empty if all were written
+     */
+    public interface BatchWriter<T> {
+        Map<Integer, String> write(List<T> batch);
+    }
+    
+    /**
+     * Outcome of an import
+     */
+    public static class Report {
+        private long rowsRead;
+        private long imported;
+        private long rejected;
+        private final List<String> errors = new ArrayList<>();
+        
+        public long getRowsRead() {
+            return rowsRead;
+        }
+        
+        public long getImported() {
+            return imported;
+        }
+        
+        public long getRejected() {
+            return rejected;
+        }
+        
+        /**
+         * Get the row errors, capped at the first 1000
+         * @return Messages of the form "Line n: reason"
+         */
+        public List<String> getErrors() {
+            return Collections.unmodifiableList(errors);
+        }
+        
+        private void reject(int line, String reason) {
+            rejected++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add("Line " + line + ": " + reason);
+            }
+        }
+        
+        @Override
+        public String toString() {
+            return "Imported " + imported + " of " + rowsRead + " rows, " + rejected + " rejected";
+        }
+    }
+    
+    private final File file;
+    private final String header;
+    private final RowParser<T> parser;
+    private final Function<T, String> keyExtractor;
+    private final BatchWriter<T> writer;
+    
+    /**
+     * Create an import task
+     * @param file The file to read
+     * @param header Expected header line, the same as the export's
+     * @param parser Validates a row and builds the entity (called from several threads)
+     * @param keyExtractor Returns the unique key of an entity, used to reject repeats within the file
+     *                     (null keys are not checked)
+     * @param writer Inserts a batch and reports the rows the database rejected
+     */
+    public CsvImportTask(File file, String header, RowParser<T> parser,
+                         Function<T, String> keyExtractor, BatchWriter<T> writer) {
+        this.file = file;
+        this.header = header;
+        this.parser = parser;
+        this.keyExtractor = keyExtractor;
+        this.writer = writer;
+    }
+    
+    /**
+     * Run a task on a daemon thread
+     * @param task The task to run
+     */
+    public static void start(Task<?> task) {
+        Thread thread = new Thread(task, "csv-import");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    /**
+     * Read a required text column
+     * @param fields The row's fields
+     * @param index Column index
+     * @param name Column name used in the error message
+     * @return The trimmed value
+     */
+    public static String requireText(List<String> fields, int index, String name) {
+        String value = text(fields, index);
+        if (value.isEmpty()) {
+            throw new IllegalArgumentException(name + " is required");
+        }
+        return value;
+    }
+    
+    /**
+     * Read an optional text column
+     * @return The trimmed value, empty if missing
+     */
+    public static String text(List<String> fields, int index) {
+        return index < fields.size() ? fields.get(index).trim() : "";
+    }
+    
+    /**
+     * Read a non-negative decimal column
+     * @param fields The row's fields
+     * @param index Column index
+     * @param name Column name used in the error message
+     * @param defaultValue Value used when the column is empty, or null if it is required
+     * @return The parsed number
+     */
+    public static double parseNumber(List<String> fields, int index, String name, Double defaultValue) {
+        String value = text(fields, index);
+        if (value.isEmpty()) {
+            if (defaultValue == null) {
+                throw new IllegalArgumentException(name + " is required");
+            }
+            return defaultValue;
+        }
+        double number;
+        try {
+            number = Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a valid number");
+        }
+        if (number < 0 || Double.isNaN(number) || Double.isInfinite(number)) {
+            throw new IllegalArgumentException(name + " must be a non-negative number");
+        }
+        return number;
+    }
+    
+    /**
+     * Read a non-negative whole number column, 0 when empty
+     * @param fields The row's fields
+     * @param index Column index
+     * @param name Column name used in the error message
+     * @return The parsed number
+     */
+    public static int parseWholeNumber(List<String> fields, int index, String name) {
+        String value = text(fields, index);
+        if (value.isEmpty()) {
+            return 0;
+        }
+        int number;
+        try {
+            number = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a valid number");
+        }
+        if (number < 0) {
+            throw new IllegalArgumentException(name + " must be a non-negative number");
+        }
+        return number;
+    }
+    
+    /**
+     * Read an ISO date column (yyyy-MM-dd)
+     * @param fields The row's fields
+     * @param index Column index
+     * @param name Column name used in the error message
+     * @param defaultToday Use today's date when the column is empty instead of rejecting the row
+     * @return The date in ISO format
+     */
+    public static String parseDate(List<String> fields, int index, String name, boolean defaultToday) {
+        String value = text(fields, index);
+        if (value.isEmpty()) {
+            if (!defaultToday) {
+                throw new IllegalArgumentException(name + " is required");
+            }
+            return LocalDate.now().format(DateTimeFormatter.ISO_LOCAL_DATE);
+        }
+        try {
+            return LocalDate.parse(value, DateTimeFormatter.ISO_LOCAL_DATE).format(DateTimeFormatter.ISO_LOCAL_DATE);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(name + " must be a date in yyyy-MM-dd format");
+        }
+    }
+    
+    @Override
+    protected Report call() throws Exception {
+        Report report = new Report();
+        Map<String, Integer> seenKeys = new HashMap<>();
+        updateMessage("Importing...");
+        
+        try (CsvReader csv = CsvReader.open(file)) {
+            checkHeader(csv.readRecord());
+            
+            List<List<String>> records = new ArrayList<>(CHUNK_SIZE);
+            List<Integer> lines = new ArrayList<>(CHUNK_SIZE);
+            List<String> record;
+            while (!isCancelled()) {
+                record = csv.readRecord();
+                if (record != null) {
+                    records.add(record);
+                    lines.add(csv.getRecordLine());
+                }
+                if (records.size() == CHUNK_SIZE || (record == null && !records.isEmpty())) {
+                    importChunk(records, lines, seenKeys, report);
+                    records.clear();
+                    lines.clear();
+                    updateMessage("Imported " + report.imported + " of " + report.rowsRead + " rows");
+                }
+                if (record == null) {
+                    break;
+                }
+            }
+        }
+        
+        updateMessage(report.toString());
+        return report;
+    }
+    
+    /**
+     * Validate a chunk of records in parallel, then write the valid rows in batches
+     */
+    private void importChunk(List<List<String>> records, List<Integer> lines,
+                             Map<String, Integer> seenKeys, Report report) {
+        int size = records.size();
+        Object[] parsed = new Object[size];
+        
+        // Parsing and validation are independent per row, so they run on the common pool
+        IntStream.range(0, size).parallel().forEach(i -> {
+            Object result;
+            try {
+                result = parser.parse(records.get(i));
+            } catch (IllegalArgumentException e) {
+                result = e;
+            }
+            parsed[i] = result;
+        });
+        
+        List<T> batch = new ArrayList<>(BATCH_SIZE);
+        List<Integer> batchLines = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < size; i++) {
+            report.rowsRead++;
+            Object result = parsed[i];
+            int line = lines.get(i);
+            if (result instanceof IllegalArgumentException) {
+                report.reject(line, ((IllegalArgumentException) result).getMessage());
+                continue;
+            }
+            
+            @SuppressWarnings("unchecked")
+            T item = (T) result;
+            String key = keyExtractor.apply(item);
+            if (key != null) {
+                Integer firstLine = seenKeys.putIfAbsent(key, line);
+                if (firstLine != null) {
+                    report.reject(line, "Duplicate of line " + firstLine + " (" + key + ")");
+                    continue;
+                }
+            }
+            
+            batch.add(item);
+            batchLines.add(line);
+            if (batch.size() == BATCH_SIZE) {
+                writeBatch(batch, batchLines, report);
+            }
+        }
+        if (!batch.isEmpty()) {
+            writeBatch(batch, batchLines, report);
+        }
+    }
+    
+    private void writeBatch(List<T> batch, List<Integer> batchLines, Report report) {
+        Map<Integer, String> rejected = writer.write(batch);
+        for (Map.Entry<Integer, String> entry : rejected.entrySet()) {
+            report.reject(batchLines.get(entry.getKey()), entry.getValue());
+        }
+        report.imported += batch.size() - rejected.size();
+        batch.clear();
+        batchLines.clear();
+    }
+    
+    /**
+     * Make sure the file has the same columns as the export
+     */
+    private void checkHeader(List<String> record) {
+        if (record == null) {
+            throw new IllegalArgumentException("The file is empty");
+        }
+        String[] expected = header.split(",");
+        boolean matches = record.size() == expected.length;
+        for (int i = 0; matches && i < expected.length; i++) {
+            matches = expected[i].trim().equalsIgnoreCase(record.get(i).trim());
+        }
+        if (!matches) {
+            throw new IllegalArgumentException("Unexpected columns, expected: " + header);
+        }
+    }
+}
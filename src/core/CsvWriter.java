@@ -0,0 +1,170 @@
+package core;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Buffered CSV writer used by the export engine
+ * Numbers are formatted by hand into a reusable buffer instead of going through printf,
+ * and files ending in .gz are gzip-compressed
+ */
+public class CsvWriter implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final long[] POWERS_OF_TEN = {1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L};
+    // Above this the scaled value could overflow a long, so fall back to BigDecimal
+    private static final double MAX_FAST_VALUE = 1e12;
+    
+    private final Writer out;
+    private final char[] digits = new char[20];
+    private boolean firstField = true;
+    
+    public CsvWriter(Writer out) {
+        this.out = out;
+    }
+    
+    /**
+     * Open a CSV file for writing, gzip-compressed if the name ends with .gz
+     * @param file The file to write
+     * @return Writer for the file
+     */
+    public static CsvWriter open(File file) throws IOException {
+        OutputStream stream = new FileOutputStream(file);
+        if (file.getName().toLowerCase().endsWith(".gz")) {
+            stream = new GZIPOutputStream(stream, BUFFER_SIZE);
+        }
+        return new CsvWriter(new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), BUFFER_SIZE));
+    }
+    
+    /**
+     * Write a line as-is, e.g. the header row
+     * @param line The line without line terminator
+     */
+    public void writeLine(String line) throws IOException {
+        out.write(line);
+        out.write('\n');
+        firstField = true;
+    }
+    
+    /**
+     * Write a text field, quoting it if it contains a comma, quote or line break
+     * @param value The text, null is written as an empty field
+     * @return This writer
+     */
+    public CsvWriter field(String value) throws IOException {
+        separator();
+        if (value == null || value.isEmpty()) {
+            return this;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0
+                && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            out.write(value);
+            return this;
+        }
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                out.write('"');
+            }
+            out.write(c);
+        }
+        out.write('"');
+        return this;
+    }
+    
+    /**
+     * Write a whole number field
+     * @param value The number
+     * @return This writer
+     */
+    public CsvWriter field(long value) throws IOException {
+        separator();
+        writeLong(value);
+        return this;
+    }
+    
+    /**
+     * Write a decimal field with a fixed number of decimal places (rounded half up)
+     * @param value The number
+     * @param decimals Decimal places, 0 to 6
+     * @return This writer
+     */
+    public CsvWriter field(double value, int decimals) throws IOException {
+        separator();
+        if (Double.isNaN(value) || Double.isInfinite(value) || Math.abs(value) >= MAX_FAST_VALUE) {
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                out.write(Double.toString(value));
+            } else {
+                out.write(BigDecimal.valueOf(value).setScale(decimals, RoundingMode.HALF_UP).toPlainString());
+            }
+            return this;
+        }
+        
+        long scale = POWERS_OF_TEN[decimals];
+        long scaled = Math.round(Math.abs(value) * scale);
+        if (value < 0 && scaled != 0) {
+            out.write('-');
+        }
+        writeLong(scaled / scale);
+        if (decimals > 0) {
+            out.write('.');
+            long fraction = scaled % scale;
+            // Left-pad the fraction with zeros to the requested width
+            for (long p = scale / 10; p > 1 && fraction < p; p /= 10) {
+                out.write('0');
+            }
+            writeLong(fraction);
+        }
+        return this;
+    }
+    
+    /**
+     * Finish the current row
+     */
+    public void endRow() throws IOException {
+        out.write('\n');
+        firstField = true;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+    
+    private void separator() throws IOException {
+        if (!firstField) {
+            out.write(',');
+        }
+        firstField = false;
+    }
+    
+    /**
+     * Write a long's digits without creating a String
+     */
+    private void writeLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            out.write(Long.toString(value));
+            return;
+        }
+        if (value < 0) {
+            out.write('-');
+            value = -value;
+        }
+        int pos = digits.length;
+        do {
+            digits[--pos] = (char) ('0' + (value % 10));
+            value /= 10;
+        } while (value > 0);
+        out.write(digits, pos, digits.length - pos);
+    }
+}
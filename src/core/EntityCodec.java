@@ -0,0 +1,214 @@
+package core;
+
+import org.bson.BsonObjectId;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonValue;
+import org.bson.BsonWriter;
+import org.bson.codecs.CollectibleCodec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+
+import java.util.Date;
+
+/**
+ * Base class for hand-written BSON codecs of the entity classes
+ * Fields are read and written straight from the BSON stream through the entity's setters and
+ * getters, with no reflection and no intermediate Document per row. Documents keep the layout
+ * Morphia writes (_id, the _t class name, nulls left out), so both paths read each other's data
+ * @param <T> Type of the entity
+ */
+public abstract class EntityCodec<T> implements CollectibleCodec<T> {
+    /** Field Morphia stores the entity class name in */
+    public static final String DISCRIMINATOR_KEY = "_t";
+    
+    private final Class<T> type;
+    
+    protected EntityCodec(Class<T> type) {
+        this.type = type;
+    }
+    
+    /**
+     * Create an empty entity to decode into
+     * @return New entity
+     */
+    protected abstract T newInstance();
+    
+    protected abstract ObjectId getId(T entity);
+    
+    protected abstract void setId(T entity, ObjectId id);
+    
+    /**
+     * Read one stored field into the entity
+     * @param entity The entity being decoded
+     * @param name The field name
+     * @param reader Reader positioned on the field's value
+     * @return true if the value was read, false to skip it
+     */
+    protected abstract boolean readField(T entity, String name, BsonReader reader);
+    
+    /**
+     * Write every stored field except _id
+     * @param entity The entity being encoded
+     * @param writer Writer inside the entity's document
+     */
+    protected abstract void writeFields(T entity, BsonWriter writer);
+    
+    /**
+     * Finish an entity after all its fields were read, e.g. to fill in derived fields
+     * @param entity The decoded entity
+     * @return The entity to return from decode
+     */
+    protected T afterDecode(T entity) {
+        return entity;
+    }
+    
+    @Override
+    public T decode(BsonReader reader, DecoderContext decoderContext) {
+        T entity = newInstance();
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            String name = reader.readName();
+            if ("_id".equals(name) && reader.getCurrentBsonType() == BsonType.OBJECT_ID) {
+                setId(entity, reader.readObjectId());
+            } else if (!readField(entity, name, reader)) {
+                reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+        return afterDecode(entity);
+    }
+    
+    @Override
+    public void encode(BsonWriter writer, T entity, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        ObjectId id = getId(entity);
+        if (id != null) {
+            writer.writeObjectId("_id", id);
+        }
+        writer.writeString(DISCRIMINATOR_KEY, type.getSimpleName());
+        writeFields(entity, writer);
+        writer.writeEndDocument();
+    }
+    
+    @Override
+    public Class<T> getEncoderClass() {
+        return type;
+    }
+    
+    @Override
+    public T generateIdIfAbsentFromDocument(T entity) {
+        if (getId(entity) == null) {
+            setId(entity, new ObjectId());
+        }
+        return entity;
+    }
+    
+    @Override
+    public boolean documentHasId(T entity) {
+        return getId(entity) != null;
+    }
+    
+    @Override
+    public BsonValue getDocumentId(T entity) {
+        ObjectId id = getId(entity);
+        if (id == null) {
+            throw new IllegalStateException("The entity does not have an _id");
+        }
+        return new BsonObjectId(id);
+    }
+    
+    /**
+     * Read a string value
+     * @param reader Reader positioned on the value
+     * @return The string, or null if the value is null or not a string
+     */
+    protected static String readString(BsonReader reader) {
+        if (reader.getCurrentBsonType() == BsonType.STRING) {
+            return reader.readString();
+        }
+        reader.skipValue();
+        return null;
+    }
+    
+    /**
+     * Read a number of any BSON numeric type as a double
+     * @param reader Reader positioned on the value
+     * @return The number, or 0 if the value is null or not a number
+     */
+    protected static double readDouble(BsonReader reader) {
+        switch (reader.getCurrentBsonType()) {
+            case DOUBLE:
+                return reader.readDouble();
+            case INT32:
+                return reader.readInt32();
+            case INT64:
+                return reader.readInt64();
+            case DECIMAL128:
+                return reader.readDecimal128().doubleValue();
+            default:
+                reader.skipValue();
+                return 0;
+        }
+    }
+    
+    /**
+     * Read a number of any BSON numeric type as an int
+     * @param reader Reader positioned on the value
+     * @return The number, or 0 if the value is null or not a number
+     */
+    protected static int readInt(BsonReader reader) {
+        return (int) readLong(reader);
+    }
+    
+    /**
+     * Read a number of any BSON numeric type as a long
+     * @param reader Reader positioned on the value
+     * @return The number, or 0 if the value is null or not a number
+     */
+    protected static long readLong(BsonReader reader) {
+        switch (reader.getCurrentBsonType()) {
+            case INT32:
+                return reader.readInt32();
+            case INT64:
+                return reader.readInt64();
+            case DOUBLE:
+                return (long) reader.readDouble();
+            default:
+                reader.skipValue();
+                return 0;
+        }
+    }
+    
+    /**
+     * Read a date value
+     * @param reader Reader positioned on the value
+     * @return The date, or null if the value is null or not a date
+     */
+    protected static Date readDate(BsonReader reader) {
+        if (reader.getCurrentBsonType() == BsonType.DATE_TIME) {
+            return new Date(reader.readDateTime());
+        }
+        reader.skipValue();
+        return null;
+    }
+    
+    /**
+     * Write a string field, left out if null like Morphia does
+     */
+    protected static void writeString(BsonWriter writer, String name, String value) {
+        if (value != null) {
+            writer.writeString(name, value);
+        }
+    }
+    
+    /**
+     * Write a date field, left out if null like Morphia does
+     */
+    protected static void writeDate(BsonWriter writer, String name, Date value) {
+        if (value != null) {
+            writer.writeDateTime(name, value.getTime());
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package core;
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Updates;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The stored fields that differ between two copies of an entity
+ * Lets an edit send a $set of just the changed fields instead of rewriting the whole document,
+ * so two users editing different fields of the same document don't overwrite each other
+ */
+public class FieldChanges {
+    /** Stored name of the version counter, raised by one on every field update */
+    public static final String VERSION_FIELD = "version";
+    
+    private final Map<String, Object> changed = new LinkedHashMap<>();
+    
+    /**
+     * Record a field if its value changed
+     * @param field Stored field name
+     * @param before Value as loaded
+     * @param after Value to save
+     * @return This object, for chaining
+     */
+    public FieldChanges compare(String field, Object before, Object after) {
+        if (!Objects.equals(before, after)) {
+            changed.put(field, after);
+        }
+        return this;
+    }
+    
+    /**
+     * Check whether any field changed
+     * @return true if nothing needs to be written
+     */
+    public boolean isEmpty() {
+        return changed.isEmpty();
+    }
+    
+    /**
+     * Get the names of the changed fields
+     * @return Stored field names in the order they were compared
+     */
+    public List<String> getFields() {
+        return Collections.unmodifiableList(new ArrayList<>(changed.keySet()));
+    }
+    
+    /**
+     * Build the filter for the update
+     * @param id The document id
+     * @param expectedVersion Version the edit was based on, or a negative number to skip the check
+     * @return Filter on the id, and on the version when checked
+     */
+    public static Bson filter(Object id, long expectedVersion) {
+        if (expectedVersion < 0) {
+            return Filters.eq("_id", id);
+        }
+        // Documents saved before versions existed have no version field and count as 0
+        Bson version = expectedVersion == 0
+                ? Filters.in(VERSION_FIELD, 0L, null)
+                : Filters.eq(VERSION_FIELD, expectedVersion);
+        return Filters.and(Filters.eq("_id", id), version);
+    }
+    
+    /**
+     * Build the update: a $set of the changed fields and a $inc of the version
+     * @return The update document
+     */
+    public Bson toUpdate() {
+        List<Bson> updates = new ArrayList<>();
+        for (Map.Entry<String, Object> field : changed.entrySet()) {
+            updates.add(Updates.set(field.getKey(), field.getValue()));
+        }
+        updates.add(Updates.inc(VERSION_FIELD, 1L));
+        return Updates.combine(updates);
+    }
+}
@@ -0,0 +1,222 @@
+package core;
+
+import javafx.animation.PauseTransition;
+import javafx.collections.ObservableList;
+import javafx.collections.transformation.FilteredList;
+import javafx.collections.transformation.SortedList;
+import javafx.util.Duration;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Search-as-you-type view over a model list
+ * The table shows a SortedList over a FilteredList of the model's own list, so searching never
+ * copies the rows and edits to the model list show up in the view straight away.
+ * Typing is debounced, and when the new query extends the previous one only the rows that
+ * matched before are scanned again. Filters can also start from rows picked by a RowIndex.
+ * Rows are matched against a precomputed lowercase key.
+ * @param <T> Type of the rows
+ */
+public class IncrementalSearch<T> {
+    private static final Duration DEBOUNCE = Duration.millis(150);
+    private static final char FIELD_SEPARATOR = '\u0001';
+    
+    private final FilteredList<T> filtered;
+    private final SortedList<T> sorted;
+    private final Function<T, String> searchKey;
+    private final PauseTransition debounce = new PauseTransition(DEBOUNCE);
+    private Runnable onChange;
+    
+    private String query = "";
+    private String pendingQuery = "";
+    private Predicate<T> filter;
+    // Set while a narrowed result is applied, rows are then looked up instead of matched
+    private Set<T> narrowedMatches;
+    
+    /**
+     * Create a search view over a list
+     * @param source The model's list
+     * @param searchKey Returns a row's lowercase search key, see buildKey()
+     */
+    public IncrementalSearch(ObservableList<T> source, Function<T, String> searchKey) {
+        this.filtered = new FilteredList<>(source);
+        this.sorted = new SortedList<>(filtered);
+        this.searchKey = searchKey;
+        debounce.setOnFinished(event -> apply(pendingQuery));
+    }
+    
+    /**
+     * Join fields into a lowercase search key
+     * Fields are separated by a control character so a query can't match across two fields
+     * @param fields The searchable fields, nulls are skipped
+     * @return The key
+     */
+    public static String buildKey(String... fields) {
+        StringBuilder key = new StringBuilder();
+        for (String field : fields) {
+            if (field != null && !field.isEmpty()) {
+                if (key.length() > 0) {
+                    key.append(FIELD_SEPARATOR);
+                }
+                key.append(field.toLowerCase());
+            }
+        }
+        return key.toString();
+    }
+    
+    /**
+     * Get the view to show in the table
+     * Bind its comparatorProperty to the table's so column sorting keeps working
+     * @return Sorted, filtered view of the source list
+     */
+    public SortedList<T> getView() {
+        return sorted;
+    }
+    
+    /**
+     * Set a callback run after the visible rows change because of a new query or filter
+     * @param onChange The callback
+     */
+    public void setOnChange(Runnable onChange) {
+        this.onChange = onChange;
+    }
+    
+    /**
+     * Search after the debounce window, restarting it on each keystroke
+     * @param text The search box text
+     */
+    public void schedule(String text) {
+        pendingQuery = text;
+        debounce.playFromStart();
+    }
+    
+    /**
+     * Search immediately, e.g. for the Search button
+     * @param text The search box text
+     */
+    public void apply(String text) {
+        debounce.stop();
+        String newQuery = text == null ? "" : text.trim().toLowerCase();
+        if (newQuery.equals(query)) {
+            return;
+        }
+        
+        if (!query.isEmpty() && newQuery.startsWith(query)) {
+            // Rows that didn't contain the old query can't contain the longer one
+            Set<T> matches = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (T row : filtered) {
+                if (searchKey.apply(row).contains(newQuery)) {
+                    matches.add(row);
+                }
+            }
+            query = newQuery;
+            showMatches(matches);
+        } else {
+            query = newQuery;
+            refilter();
+        }
+    }
+    
+    /**
+     * Search immediately with an extra condition rows must also meet, e.g. date and product filters
+     * A new condition always rescans the whole list
+     * @param text The search box text
+     * @param filter The condition, or null for none
+     */
+    public void apply(String text, Predicate<T> filter) {
+        apply(text, filter, null);
+    }
+    
+    /**
+     * Search immediately with an extra condition, starting from rows picked by an index
+     * Only the candidates are matched, the rest of the list is hidden by a set lookup
+     * @param text The search box text
+     * @param filter The condition, or null for none
+     * @param candidates The only rows that can match, or null to scan the whole list
+     */
+    public void apply(String text, Predicate<T> filter, Collection<T> candidates) {
+        debounce.stop();
+        this.filter = filter;
+        query = text == null ? "" : text.trim().toLowerCase();
+        if (candidates == null || !isActive()) {
+            refilter();
+            return;
+        }
+        
+        Set<T> matches = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (T row : candidates) {
+            if (test(row)) {
+                matches.add(row);
+            }
+        }
+        showMatches(matches);
+    }
+    
+    /**
+     * Clear the query and the extra condition
+     */
+    public void clear() {
+        debounce.stop();
+        query = "";
+        pendingQuery = "";
+        filter = null;
+        refilter();
+    }
+    
+    /**
+     * Check whether the view currently hides any rows
+     * @return true if a query or filter is active
+     */
+    public boolean isActive() {
+        return !query.isEmpty() || filter != null;
+    }
+    
+    /**
+     * Get the current normalised query
+     * @return The lowercase query, empty if none
+     */
+    public String getQuery() {
+        return query;
+    }
+    
+    /**
+     * Show exactly the given rows, rows added to the source later are matched normally
+     */
+    private void showMatches(Set<T> matches) {
+        narrowedMatches = matches;
+        try {
+            filtered.setPredicate(this::test);
+        } finally {
+            narrowedMatches = null;
+        }
+        changed();
+    }
+    
+    private void refilter() {
+        filtered.setPredicate(isActive() ? this::test : null);
+        changed();
+    }
+    
+    private boolean test(T row) {
+        Set<T> matches = narrowedMatches;
+        if (matches != null) {
+            return matches.contains(row);
+        }
+        if (filter != null && !filter.test(row)) {
+            return false;
+        }
+        // Full scan, or a row added to the source while the query is active
+        return query.isEmpty() || searchKey.apply(row).contains(query);
+    }
+    
+    private void changed() {
+        if (onChange != null) {
+            onChange.run();
+        }
+    }
+}
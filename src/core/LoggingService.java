@@ -1,25 +1,76 @@
 package core;
 
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.InsertManyOptions;
 import features.logsPage.Log;
 import features.logsPage.LogModel;
+import javafx.application.Platform;
+import org.bson.Document;
+import org.bson.types.ObjectId;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
 import java.time.ZoneId;
-import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Utility service for logging system activities
  * Provides easy-to-use static methods for logging actions
+ * Entries are queued and written in batches by a background thread,
+ * so logging never waits on the database
  */
 public class LoggingService {
-    private static LogModel logModel;
+    /**
+     * What log() does when the queue is full
+     * BLOCK waits for space, DROP discards the entry, SPILL appends it to a local file
+     * that is written to the database once it is reachable again
+     */
+    public enum OverflowPolicy { BLOCK, DROP, SPILL }
+    
+    private static final int QUEUE_CAPACITY = 10_000;
+    private static final int BATCH_SIZE = 100;
+    private static final long FLUSH_INTERVAL_MILLIS = 500;
+    private static final long RETRY_INTERVAL_MILLIS = 30_000;
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 5_000;
+    // Identifiers listed in the details of a bulk action entry, the rest are counted
+    private static final int MAX_LISTED_IDENTIFIERS = 50;
+    private static final Path SPILL_PATH = Paths.get("audit-log-spill.jsonl");
+    
     private static final DateTimeFormatter TIMESTAMP_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
     private static final ZoneId PKT_ZONE = ZoneId.of("Asia/Karachi"); // Pakistan (UTC+5, no DST)
     private static final ZoneId UK_ZONE = ZoneId.of("Europe/London"); // UK (GMT/BST, UTC+0/+1, automatic DST)
     
+    private static final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private static final Object spillLock = new Object();
+    private static final AtomicLong droppedCount = new AtomicLong();
+    
+    private static volatile LogModel logModel;
+    private static volatile OverflowPolicy overflowPolicy;
+    private static volatile boolean running;
+    private static volatile boolean spilled;
+    private static volatile long lastFailureMillis;
+    private static Thread writerThread;
+    
     /**
      * Initialize the logging service with a LogModel
-     * Should be called once at application startup
+     * Written entries are added to the top of this model's list
      */
     public static void initialize(LogModel model) {
         logModel = model;
@@ -27,6 +78,7 @@ public class LoggingService {
     
     /**
      * Log a system action
+     * Only queues the entry, the database write happens on the writer thread
      * @param actionType Action type: "Added", "Edited", or "Deleted"
      * @param module Module name: "Stock" or "Revenue"
      * @param entityType Entity type: "Product" or "Sale"
@@ -35,44 +87,347 @@ public class LoggingService {
      */
     public static void log(String actionType, String module, String entityType,
                            String entityIdentifier, String details) {
-        // Initialize logModel if not already set
-        if (logModel == null) {
-            logModel = new LogModel();
+        Entry entry = new Entry(new ObjectId(), actionType, module, entityType, entityIdentifier,
+                details, System.currentTimeMillis());
+        ensureStarted();
+        
+        if (!running) {
+            spill(List.of(entry)); // Already shut down, keep the entry for the next start
+            return;
+        }
+        if (queue.offer(entry)) {
+            return;
         }
         
+        // Queue is full, apply the backpressure policy
+        switch (getOverflowPolicy()) {
+            case BLOCK:
+                try {
+                    queue.put(entry);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    droppedCount.incrementAndGet();
+                }
+                break;
+            case DROP:
+                droppedCount.incrementAndGet();
+                break;
+            case SPILL:
+            default:
+                spill(List.of(entry));
+                break;
+        }
+    }
+    
+    /**
+     * Log one entry for an action applied to several records at once
+     * @param actionType Action type: "Added", "Edited", or "Deleted"
+     * @param module Module name: "Stock" or "Revenue"
+     * @param entityType Entity type: "Product" or "Sale"
+     * @param entityIdentifiers Identifiers of all the affected records
+     * @param details Brief description of the action, the identifiers are appended to it
+     */
+    public static void logBulk(String actionType, String module, String entityType,
+                               List<String> entityIdentifiers, String details) {
+        int count = entityIdentifiers.size();
+        int listed = Math.min(count, MAX_LISTED_IDENTIFIERS);
+        StringBuilder text = new StringBuilder(details).append(": ")
+                .append(String.join(", ", entityIdentifiers.subList(0, listed)));
+        if (count > listed) {
+            text.append(" and ").append(count - listed).append(" more");
+        }
+        log(actionType, module, entityType, count + " records", text.toString());
+    }
+    
+    /**
+     * Write all queued entries and stop the writer thread
+     * Called when the application closes
+     */
+    public static void shutdown() {
+        Thread writer;
+        synchronized (LoggingService.class) {
+            running = false;
+            writer = writerThread;
+        }
+        if (writer == null) {
+            return;
+        }
         try {
-            // Get current time in UTC
-            ZonedDateTime now = ZonedDateTime.now(ZoneId.of("UTC"));
-            
-            // Convert to Pakistan time (PKT, UTC+5)
-            ZonedDateTime pktTime = now.withZoneSameInstant(PKT_ZONE);
-            String timestampPkt = pktTime.format(TIMESTAMP_FORMATTER);
-            
-            // Convert to UK time (GMT/BST, automatic DST)
-            ZonedDateTime ukTime = now.withZoneSameInstant(UK_ZONE);
-            String timestampGmt = ukTime.format(TIMESTAMP_FORMATTER);
+            writer.join(SHUTDOWN_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        // Anything the writer didn't get to is kept for the next start
+        List<Entry> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            spill(remaining);
+        }
+    }
+    
+    /**
+     * Get the backpressure policy, read from config.xml unless set explicitly
+     * @return Overflow policy, default SPILL
+     */
+    public static OverflowPolicy getOverflowPolicy() {
+        OverflowPolicy policy = overflowPolicy;
+        if (policy != null) {
+            return policy;
+        }
+        String configured = ConfigManager.getValue(ConfigManager.LOG_OVERFLOW_POLICY);
+        if (configured != null && !configured.isEmpty()) {
+            try {
+                return OverflowPolicy.valueOf(configured.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                System.err.println("Unknown log overflow policy: " + configured);
+            }
+        }
+        return OverflowPolicy.SPILL;
+    }
+    
+    /**
+     * Set the backpressure policy, overriding config.xml
+     * @param policy The policy to use when the queue is full
+     */
+    public static void setOverflowPolicy(OverflowPolicy policy) {
+        overflowPolicy = policy;
+    }
+    
+    /**
+     * Get number of entries discarded because the queue was full
+     * @return Dropped entry count
+     */
+    public static long getDroppedCount() {
+        return droppedCount.get();
+    }
+    
+    private static synchronized void ensureStarted() {
+        if (writerThread != null) {
+            return;
+        }
+        running = true;
+        writerThread = new Thread(LoggingService::runWriter, "audit-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+    
+    /**
+     * Writer loop: flush when a batch is full or the flush interval has passed
+     */
+    private static void runWriter() {
+        spilled = Files.exists(SPILL_PATH);
+        List<Entry> batch = new ArrayList<>(BATCH_SIZE);
+        
+        while (running || !queue.isEmpty()) {
+            try {
+                Entry first = queue.poll(FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    // Idle: retry spilled entries, backing off while the database is unreachable
+                    if (spilled && System.currentTimeMillis() - lastFailureMillis > RETRY_INTERVAL_MILLIS) {
+                        replaySpillFile();
+                    }
+                    continue;
+                }
+                batch.add(first);
+                
+                long deadline = System.currentTimeMillis() + FLUSH_INTERVAL_MILLIS;
+                while (batch.size() < BATCH_SIZE && running) {
+                    queue.drainTo(batch, BATCH_SIZE - batch.size());
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (batch.size() >= BATCH_SIZE || remaining <= 0) {
+                        break;
+                    }
+                    Entry next = queue.poll(remaining, TimeUnit.MILLISECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                
+                writeBatch(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                // Keep going until shutdown() stops the loop
+            }
+        }
+        
+        if (!batch.isEmpty()) {
+            writeBatch(batch);
+        }
+    }
+    
+    /**
+     * Insert a batch of entries with a single insertMany
+     * Entries that can't be written are spilled to disk and retried later. Each entry keeps
+     * the _id it was given when logged, so a retry of an entry that did reach the database
+     * fails on the duplicate key instead of writing it twice
+     * @return true if the whole batch reached the database
+     */
+    private static boolean writeBatch(List<Entry> batch) {
+        List<Log> logs = new ArrayList<>(batch.size());
+        for (Entry entry : batch) {
+            logs.add(entry.toLog());
+        }
+        
+        List<Entry> failed = new ArrayList<>();
+        try {
+            if (!Connection.getInstance().isConnected()) {
+                throw new NoDatabaseConnectionException();
+            }
+            Connection.getInstance().getCollection(Log.class)
+                    .insertMany(logs, new InsertManyOptions().ordered(false));
+        } catch (MongoBulkWriteException e) {
+            // The unordered insert still wrote every row that has no write error
+            Set<Integer> notWritten = new HashSet<>();
+            for (BulkWriteError error : e.getWriteErrors()) {
+                notWritten.add(error.getIndex());
+                if (error.getCategory() != ErrorCategory.DUPLICATE_KEY) {
+                    failed.add(batch.get(error.getIndex()));
+                }
+                // A duplicate key means an earlier attempt already wrote the entry
+            }
+            List<Log> inserted = new ArrayList<>(logs.size() - notWritten.size());
+            for (int i = 0; i < logs.size(); i++) {
+                if (!notWritten.contains(i)) {
+                    inserted.add(logs.get(i));
+                }
+            }
+            logs = inserted;
+        } catch (Exception e) {
+            System.err.println("Error logging action: " + e.getMessage());
+            lastFailureMillis = System.currentTimeMillis();
+            spill(batch);
+            return false;
+        }
+        
+        if (!failed.isEmpty()) {
+            System.err.println("Error logging " + failed.size() + " actions, they will be retried");
+            lastFailureMillis = System.currentTimeMillis();
+            spill(failed);
+        }
+        LogModel model = logModel;
+        List<Log> written = logs;
+        if (model != null && !written.isEmpty()) {
+            Platform.runLater(() -> model.prependLogs(written));
+        }
+        if (failed.isEmpty() && spilled) {
+            replaySpillFile();
+        }
+        return failed.isEmpty();
+    }
+    
+    /**
+     * Append entries to the spill file, one JSON document per line
+     */
+    private static void spill(List<Entry> entries) {
+        synchronized (spillLock) {
+            try (BufferedWriter writer = Files.newBufferedWriter(SPILL_PATH, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (Entry entry : entries) {
+                    writer.write(entry.toDocument().toJson());
+                    writer.newLine();
+                }
+                spilled = true;
+            } catch (IOException e) {
+                System.err.println("Error spilling log entries: " + e.getMessage());
+                droppedCount.addAndGet(entries.size());
+            }
+        }
+    }
+    
+    /**
+     * Move spilled entries back into the database
+     */
+    private static void replaySpillFile() {
+        List<Entry> entries = new ArrayList<>();
+        synchronized (spillLock) {
+            try {
+                if (Files.exists(SPILL_PATH)) {
+                    for (String line : Files.readAllLines(SPILL_PATH, StandardCharsets.UTF_8)) {
+                        if (!line.trim().isEmpty()) {
+                            entries.add(Entry.fromDocument(Document.parse(line)));
+                        }
+                    }
+                    Files.delete(SPILL_PATH);
+                }
+                spilled = false;
+            } catch (Exception e) {
+                System.err.println("Error reading spilled log entries: " + e.getMessage());
+                return;
+            }
+        }
+        
+        // A failed chunk is spilled again by writeBatch, so stop at the first failure
+        for (int i = 0; i < entries.size(); i += BATCH_SIZE) {
+            List<Entry> chunk = entries.subList(i, Math.min(i + BATCH_SIZE, entries.size()));
+            if (!writeBatch(chunk)) {
+                if (i + BATCH_SIZE < entries.size()) {
+                    spill(entries.subList(i + BATCH_SIZE, entries.size()));
+                }
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Log entry waiting to be written
+     * Only the wall-clock time is captured by log(), timestamps are formatted on the writer thread
+     */
+    private static final class Entry {
+        private final ObjectId id;
+        private final String actionType;
+        private final String module;
+        private final String entityType;
+        private final String entityIdentifier;
+        private final String details;
+        private final long timeMillis;
+        
+        private Entry(ObjectId id, String actionType, String module, String entityType,
+                      String entityIdentifier, String details, long timeMillis) {
+            this.id = id;
+            this.actionType = actionType;
+            this.module = module;
+            this.entityType = entityType;
+            this.entityIdentifier = entityIdentifier;
+            this.details = details;
+            this.timeMillis = timeMillis;
+        }
+        
+        private Log toLog() {
+            Instant now = Instant.ofEpochMilli(timeMillis);
             
-            // ISO format timestamp for sorting
-            String timestamp = now.format(DateTimeFormatter.ISO_INSTANT);
+            // Fixed-width UTC timestamp for sorting
+            String timestamp = Log.TIMESTAMP_FORMATTER.format(now);
             
-            // Create log entry
-            Log log = new Log(
-                actionType,
-                module,
-                entityType,
-                entityIdentifier,
-                details,
-                timestamp,
-                timestampPkt,
-                timestampGmt
-            );
+            // Pakistan time (PKT, UTC+5) and UK time (GMT/BST, automatic DST)
+            String timestampPkt = TIMESTAMP_FORMATTER.format(now.atZone(PKT_ZONE));
+            String timestampGmt = TIMESTAMP_FORMATTER.format(now.atZone(UK_ZONE));
             
-            // Save to database
-            logModel.addLog(log);
-        } catch (Exception e) {
-            System.err.println("Error logging action: " + e.getMessage());
-            e.printStackTrace();
+            Log log = new Log(actionType, module, entityType, entityIdentifier, details,
+                    timestamp, timestampPkt, timestampGmt);
+            log.setId(id);
+            log.setCreatedAt(new Date(timeMillis));
+            return log;
+        }
+        
+        private Document toDocument() {
+            return new Document("_id", id.toHexString())
+                    .append("actionType", actionType)
+                    .append("module", module)
+                    .append("entityType", entityType)
+                    .append("entityIdentifier", entityIdentifier)
+                    .append("details", details)
+                    .append("timeMillis", timeMillis);
+        }
+        
+        private static Entry fromDocument(Document doc) {
+            // Spill files written before entries had an id get a new one
+            String id = doc.getString("_id");
+            return new Entry(id != null ? new ObjectId(id) : new ObjectId(),
+                    doc.getString("actionType"), doc.getString("module"),
+                    doc.getString("entityType"), doc.getString("entityIdentifier"),
+                    doc.getString("details"), doc.get("timeMillis", Number.class).longValue());
         }
     }
 }
-
@@ -0,0 +1,114 @@
+package core;
+
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.stage.Stage;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Utility class for switching between pages
+ * Pages are shown straight away and their models are loaded on a background thread,
+ * so slow database calls never block the JavaFX application thread
+ */
+public class PageNavigator {
+    private static final double PAGE_WIDTH = 1100;
+    private static final double PAGE_HEIGHT = 700;
+    
+    // Model load started by the page currently on screen, if still running
+    private static Task<?> pendingLoad;
+    
+    /**
+     * Switch the stage to another page
+     * Any model load still running for the page being left is cancelled
+     * @param stage The stage to show the page on
+     * @param fxmlUrl Location of the page's FXML file
+     * @param title Window title
+     * @return The page's controller
+     */
+    public static <C> C navigateTo(Stage stage, URL fxmlUrl, String title) throws IOException {
+        if (stage == null) {
+            throw new IllegalStateException("Could not retrieve stage for navigation");
+        }
+        cancelPendingLoad();
+        
+        FXMLLoader loader = new FXMLLoader(fxmlUrl);
+        Parent root = loader.load();
+        
+        Scene scene = new Scene(root, PAGE_WIDTH, PAGE_HEIGHT);
+        stage.setScene(scene);
+        stage.setTitle(title);
+        
+        // Force layout recalculation
+        Platform.runLater(() -> {
+            stage.sizeToScene();
+            root.requestLayout();
+        });
+        
+        return loader.getController();
+    }
+    
+    /**
+     * Create a page's model on a background thread and bind it once loaded
+     * Only one load runs at a time: starting a new one cancels the previous one
+     * @param factory Creates and loads the model (runs off the FX thread)
+     * @param onLoaded Binds the loaded model to the page (runs on the FX thread)
+     * @param stageSupplier Stage to redirect if the database is unavailable
+     * @return The background task
+     */
+    public static <M> Task<M> loadModel(Callable<M> factory, Consumer<M> onLoaded, Supplier<Stage> stageSupplier) {
+        cancelPendingLoad();
+        
+        Task<M> task = new Task<M>() {
+            @Override
+            protected M call() throws Exception {
+                return factory.call();
+            }
+        };
+        
+        task.setOnSucceeded(event -> {
+            clearPendingLoad(task);
+            onLoaded.accept(task.getValue());
+        });
+        task.setOnFailed(event -> {
+            clearPendingLoad(task);
+            Throwable error = task.getException();
+            if (error instanceof NoDatabaseConnectionException) {
+                DatabaseAccessHandler.showNoConnectionAlert(stageSupplier.get());
+            } else {
+                System.err.println("Error loading page data: " + error.getMessage());
+                error.printStackTrace();
+            }
+        });
+        
+        pendingLoad = task;
+        Thread thread = new Thread(task, "page-model-loader");
+        thread.setDaemon(true);
+        thread.start();
+        return task;
+    }
+    
+    /**
+     * Cancel the model load of the current page, if one is running
+     * A cancelled load never calls its onLoaded callback
+     */
+    public static void cancelPendingLoad() {
+        if (pendingLoad != null) {
+            pendingLoad.cancel();
+            pendingLoad = null;
+        }
+    }
+    
+    private static void clearPendingLoad(Task<?> task) {
+        if (pendingLoad == task) {
+            pendingLoad = null;
+        }
+    }
+}
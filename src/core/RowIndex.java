@@ -0,0 +1,291 @@
+package core;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * In-memory indexes over a model list, kept up to date as the list changes
+ * One sorted index answers day ranges and any number of hash indexes answer equality
+ * conditions (e.g. SKU or module), so a filter can start from the smallest matching group
+ * of rows instead of scanning the whole list.
+ * The day index keeps the rows in an array sorted by epoch day next to an int[] of the days,
+ * so a range is two binary searches and the result is a slice of that array.
+ * Keys are read when a row is added, so edited rows must be replaced in the list, not changed in place
+ * @param <T> Type of the rows
+ */
+public class RowIndex<T> {
+    /** Day key of rows without a valid date, they are left out of the day index */
+    public static final int NO_DAY = Integer.MIN_VALUE;
+    // Changes with more rows are applied in one pass: removals compact the arrays once and
+    // additions are appended unsorted and sorted once on the next lookup
+    private static final int BULK_CHANGE = 32;
+    
+    private final ToIntFunction<T> dayKey;
+    private final Map<String, Function<T, String>> bucketKeys;
+    private final Map<String, Map<String, Set<T>>> buckets = new HashMap<>();
+    private int[] days = new int[16];
+    private Object[] rows = new Object[16];
+    private int size;
+    private boolean sorted = true;
+    
+    /**
+     * Create indexes over a list
+     * @param source The model's list
+     * @param dayKey Epoch day of a row, or NO_DAY if it has none
+     * @param bucketKeys Hash indexes by name, each with the key it groups rows by
+     */
+    public RowIndex(ObservableList<T> source, ToIntFunction<T> dayKey,
+                    Map<String, Function<T, String>> bucketKeys) {
+        this.dayKey = dayKey;
+        this.bucketKeys = bucketKeys;
+        for (String name : bucketKeys.keySet()) {
+            buckets.put(name, new HashMap<>());
+        }
+        for (T row : source) {
+            append(row);
+        }
+        source.addListener(this::onChange);
+    }
+    
+    /**
+     * Get the rows whose day lies between two bounds, in day order
+     * The result is a read-only view that is only valid until the source list changes
+     * @param fromDay First epoch day (inclusive), or NO_DAY for no lower bound
+     * @param toDay Last epoch day (inclusive), or NO_DAY for no upper bound
+     * @return Matching rows
+     */
+    @SuppressWarnings("unchecked")
+    public List<T> range(int fromDay, int toDay) {
+        ensureSorted();
+        int start = startOf(fromDay);
+        int end = endOf(toDay);
+        if (start >= end) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList((List<T>) Arrays.asList(rows).subList(start, end));
+    }
+    
+    /**
+     * Count the rows whose day lies between two bounds with two binary searches
+     * @param fromDay First epoch day (inclusive), or NO_DAY for no lower bound
+     * @param toDay Last epoch day (inclusive), or NO_DAY for no upper bound
+     * @return Number of matching rows
+     */
+    public int countRange(int fromDay, int toDay) {
+        ensureSorted();
+        return Math.max(0, endOf(toDay) - startOf(fromDay));
+    }
+    
+    /**
+     * Get the rows with a given key in a hash index
+     * @param name Name of the hash index
+     * @param value The key
+     * @return Matching rows, empty if none
+     */
+    public Collection<T> bucket(String name, String value) {
+        Set<T> group = buckets.get(name).get(value);
+        return group != null ? Collections.unmodifiableSet(group) : Collections.emptySet();
+    }
+    
+    /**
+     * Apply a list change, removals first and then additions
+     * A scattered removeAll arrives as one change with many small parts, so the sizes are
+     * totalled over the whole change before picking per-row updates or one bulk pass
+     */
+    private void onChange(ListChangeListener.Change<? extends T> change) {
+        List<T> removed = new ArrayList<>();
+        List<T> added = new ArrayList<>();
+        while (change.next()) {
+            if (change.wasPermutated() || change.wasUpdated()) {
+                continue;
+            }
+            removed.addAll(change.getRemoved());
+            added.addAll(change.getAddedSubList());
+        }
+        
+        if (change.getList().size() == added.size()) {
+            // Cleared or replaced outright, e.g. on reload
+            clear();
+        } else if (removed.size() > BULK_CHANGE) {
+            removeAll(removed);
+        } else {
+            for (T row : removed) {
+                remove(row);
+            }
+        }
+        boolean bulk = added.size() > BULK_CHANGE;
+        for (T row : added) {
+            if (bulk) {
+                append(row);
+            } else {
+                insert(row);
+            }
+        }
+    }
+    
+    private int startOf(int fromDay) {
+        return fromDay == NO_DAY ? 0 : lowerBound(fromDay);
+    }
+    
+    private int endOf(int toDay) {
+        return toDay == NO_DAY || toDay == Integer.MAX_VALUE ? size : lowerBound(toDay + 1);
+    }
+    
+    /**
+     * Find the first position whose day is at least the given day
+     */
+    private int lowerBound(int day) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (days[mid] < day) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    private void insert(T row) {
+        addToBuckets(row);
+        int day = dayKey.applyAsInt(row);
+        if (day == NO_DAY) {
+            return;
+        }
+        ensureSorted();
+        grow();
+        // After any rows with the same day, so equal days keep their insertion order
+        int position = endOf(day);
+        System.arraycopy(days, position, days, position + 1, size - position);
+        System.arraycopy(rows, position, rows, position + 1, size - position);
+        days[position] = day;
+        rows[position] = row;
+        size++;
+    }
+    
+    private void append(T row) {
+        addToBuckets(row);
+        int day = dayKey.applyAsInt(row);
+        if (day == NO_DAY) {
+            return;
+        }
+        grow();
+        if (size > 0 && days[size - 1] > day) {
+            sorted = false;
+        }
+        days[size] = day;
+        rows[size] = row;
+        size++;
+    }
+    
+    private void remove(T row) {
+        removeFromBuckets(row);
+        
+        int day = dayKey.applyAsInt(row);
+        if (day == NO_DAY) {
+            return;
+        }
+        ensureSorted();
+        for (int i = lowerBound(day); i < size && days[i] == day; i++) {
+            if (rows[i] == row) {
+                System.arraycopy(days, i + 1, days, i, size - i - 1);
+                System.arraycopy(rows, i + 1, rows, i, size - i - 1);
+                rows[--size] = null;
+                return;
+            }
+        }
+    }
+    
+    private void clear() {
+        for (Map<String, Set<T>> groups : buckets.values()) {
+            groups.clear();
+        }
+        Arrays.fill(rows, 0, size, null);
+        size = 0;
+        sorted = true;
+    }
+    
+    /**
+     * Remove many rows with one pass over the day index instead of one array shift per row
+     */
+    private void removeAll(List<? extends T> removed) {
+        Set<T> gone = identitySet();
+        for (T row : removed) {
+            removeFromBuckets(row);
+            gone.add(row);
+        }
+        
+        // Sorted order is kept, so an unsorted index stays unsorted and vice versa
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            @SuppressWarnings("unchecked")
+            T row = (T) rows[i];
+            if (!gone.contains(row)) {
+                days[kept] = days[i];
+                rows[kept] = row;
+                kept++;
+            }
+        }
+        Arrays.fill(rows, kept, size, null);
+        size = kept;
+    }
+    
+    private void removeFromBuckets(T row) {
+        for (Map.Entry<String, Function<T, String>> index : bucketKeys.entrySet()) {
+            String value = index.getValue().apply(row);
+            Map<String, Set<T>> groups = buckets.get(index.getKey());
+            Set<T> group = value != null ? groups.get(value) : null;
+            if (group != null && group.remove(row) && group.isEmpty()) {
+                groups.remove(value);
+            }
+        }
+    }
+    
+    private void addToBuckets(T row) {
+        for (Map.Entry<String, Function<T, String>> index : bucketKeys.entrySet()) {
+            String value = index.getValue().apply(row);
+            if (value != null) {
+                buckets.get(index.getKey()).computeIfAbsent(value, k -> identitySet()).add(row);
+            }
+        }
+    }
+    
+    private void grow() {
+        if (size == days.length) {
+            days = Arrays.copyOf(days, size * 2);
+            rows = Arrays.copyOf(rows, size * 2);
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private void ensureSorted() {
+        if (sorted) {
+            return;
+        }
+        // Stable sort, so rows with the same day stay in list order
+        Arrays.sort(rows, 0, size, Comparator.comparingInt(row -> dayKey.applyAsInt((T) row)));
+        for (int i = 0; i < size; i++) {
+            days[i] = dayKey.applyAsInt((T) rows[i]);
+        }
+        sorted = true;
+    }
+    
+    private static <T> Set<T> identitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+}
@@ -0,0 +1,109 @@
+package core;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+
+/**
+ * Atomic sequence stored in the counters collection
+ * Each call to next() is a single findOneAndUpdate with $inc, so concurrent
+ * terminals never receive the same value. With a block size above 1 the counter
+ * reserves a range of values per round trip and hands them out locally.
+ */
+public class SequenceCounter {
+    private static final String COLLECTION_NAME = "counters";
+    
+    private final MongoCollection<Document> counters;
+    private final String name;
+    private final int blockSize;
+    
+    // Values reserved by the last block allocation, nextValue > blockEnd when used up
+    private long nextValue = 1;
+    private long blockEnd = 0;
+    
+    /**
+     * Create a counter that allocates one value per round trip
+     * @param database Database holding the counters collection
+     * @param name Name of the sequence (the counter document's _id)
+     */
+    public SequenceCounter(MongoDatabase database, String name) {
+        this(database, name, 1);
+    }
+    
+    /**
+     * Create a counter that reserves values in blocks
+     * @param database Database holding the counters collection
+     * @param name Name of the sequence (the counter document's _id)
+     * @param blockSize Number of values reserved per round trip
+     */
+    public SequenceCounter(MongoDatabase database, String name, int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive");
+        }
+        this.counters = database.getCollection(COLLECTION_NAME);
+        this.name = name;
+        this.blockSize = blockSize;
+    }
+    
+    /**
+     * Allocate the next value of the sequence
+     * @return The allocated value, starting from 1
+     */
+    public synchronized long next() {
+        if (nextValue > blockEnd) {
+            long end = increment(blockSize);
+            nextValue = end - blockSize + 1;
+            blockEnd = end;
+        }
+        return nextValue++;
+    }
+    
+    /**
+     * Reserve a contiguous range of values in one round trip, e.g. for a bulk import
+     * @param count Number of values to reserve
+     * @return The first reserved value, the range ends at first + count - 1
+     */
+    public long reserve(int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("Count must be positive");
+        }
+        return increment(count) - count + 1;
+    }
+    
+    /**
+     * Raise the sequence so the next value is above the given one
+     * Uses $max, so it never lowers the counter and is safe to run more than once
+     * The locally reserved block is dropped, it may hold values the caller already used
+     * @param currentMax Highest value already in use
+     */
+    public synchronized void seed(long currentMax) {
+        counters.updateOne(Filters.eq("_id", name),
+                Updates.max("value", currentMax),
+                new UpdateOptions().upsert(true));
+        nextValue = 1;
+        blockEnd = 0;
+    }
+    
+    /**
+     * Check whether the counter document has been created
+     * @return true if the sequence exists in the counters collection
+     */
+    public boolean exists() {
+        return counters.find(Filters.eq("_id", name)).first() != null;
+    }
+    
+    /**
+     * Atomically add to the counter and return its new value
+     */
+    private long increment(int amount) {
+        Document counter = counters.findOneAndUpdate(Filters.eq("_id", name),
+                Updates.inc("value", (long) amount),
+                new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.AFTER));
+        return ((Number) counter.get("value")).longValue();
+    }
+}
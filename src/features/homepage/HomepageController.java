@@ -12,16 +12,8 @@ import javafx.scene.control.ButtonType;
 import javafx.scene.layout.HBox;
 import javafx.stage.Stage;
 import core.ClockWidget;
-import features.revenue.RevenueController;
-import features.revenue.RevenueModel;
-import core.DatabaseAccessHandler;
-import core.NoDatabaseConnectionException;
-import features.logsPage.LogsController;
-import features.logsPage.LogModel;
-import features.revenue.RevenueController;
-import features.revenue.RevenueModel;
+import core.PageNavigator;
 import features.stock.StockController;
-import features.stock.StockModel;
 
 import java.net.URL;
 import java.util.ResourceBundle;
@@ -106,43 +98,17 @@ public class HomepageController implements Initializable {
             // Cleanup clocks before navigating
             cleanup();
             
-            // Load the stock view
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("../stock/stock.fxml"));
-            Parent root = loader.load();
-            StockController controller = loader.getController();
-            
-            // Create and set the model (with database access handling)
-            Stage currentStage = getStage();
-            try {
-                StockModel model = new StockModel();
-                controller.setModel(model);
-            } catch (NoDatabaseConnectionException e) {
-                DatabaseAccessHandler.showNoConnectionAlert(currentStage);
-                return;
-            }
-            
-            // Get the stage and switch scene - try multiple methods
+            // Switch to the stock view, products load in the background
             Stage stage = getStage();
-            if (stage != null) {
-                Scene scene = new Scene(root, 1100, 700);
-                stage.setScene(scene);
-                stage.setTitle("Stock");
-                
-                // Force layout recalculation
-                Platform.runLater(() -> {
-                    stage.sizeToScene();
-                    root.requestLayout();
-                });
-                
-                // Cleanup on close
-                stage.setOnCloseRequest(event -> {
-                    if (controller != null) {
-                        controller.cleanup();
-                    }
-                });
-            } else {
-                throw new RuntimeException("Could not retrieve stage for navigation");
-            }
+            StockController controller = PageNavigator.navigateTo(stage,
+                    getClass().getResource("../stock/stock.fxml"), "Stock");
+            
+            // Cleanup on close
+            stage.setOnCloseRequest(event -> {
+                if (controller != null) {
+                    controller.cleanup();
+                }
+            });
         } catch (Exception e) {
             Alert alert = new Alert(Alert.AlertType.ERROR);
             alert.setTitle("Navigation Error");
@@ -176,59 +142,7 @@ public class HomepageController implements Initializable {
             // Cleanup clocks before navigating
             cleanup();
             
-            // Load the new view
-            FXMLLoader loader = new FXMLLoader(getClass().getResource(fxmlPath));
-            Parent root = loader.load();
-            
-            // Special handling for stock page - initialize model
-            if (fxmlPath.contains("stock.fxml")) {
-                StockController controller = loader.getController();
-                try {
-                    StockModel model = new StockModel();
-                    controller.setModel(model);
-                } catch (NoDatabaseConnectionException e) {
-                    DatabaseAccessHandler.showNoConnectionAlert(getStage());
-                    return;
-                }
-            }
-            // Special handling for revenue page - initialize model
-            else if (fxmlPath.contains("revenue.fxml")) {
-                RevenueController controller = loader.getController();
-                try {
-                    RevenueModel revenueModel = new RevenueModel();
-                    controller.setModel(revenueModel);
-                } catch (NoDatabaseConnectionException e) {
-                    DatabaseAccessHandler.showNoConnectionAlert(getStage());
-                    return;
-                }
-            }
-            // Special handling for logs page - initialize model
-            else if (fxmlPath.contains("log.fxml")) {
-                LogsController controller = loader.getController();
-                try {
-                    LogModel logModel = new LogModel();
-                    controller.setModel(logModel);
-                } catch (NoDatabaseConnectionException e) {
-                    DatabaseAccessHandler.showNoConnectionAlert(getStage());
-                    return;
-                }
-            }
-            
-            // Get the stage and switch scene
-            Stage stage = getStage();
-            if (stage != null) {
-                Scene scene = new Scene(root, 1100, 700);
-                stage.setScene(scene);
-                stage.setTitle(title);
-                
-                // Force layout recalculation
-                Platform.runLater(() -> {
-                    stage.sizeToScene();
-                    root.requestLayout();
-                });
-            } else {
-                throw new RuntimeException("Could not retrieve stage for navigation");
-            }
+            PageNavigator.navigateTo(getStage(), getClass().getResource(fxmlPath), title);
         } catch (Exception e) {
             Alert alert = new Alert(Alert.AlertType.ERROR);
             alert.setTitle("Navigation Error");
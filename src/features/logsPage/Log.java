@@ -1,16 +1,38 @@
 package features.logsPage;
 
+import core.IncrementalSearch;
+import core.RowIndex;
 import dev.morphia.annotations.Entity;
+import dev.morphia.annotations.Field;
 import dev.morphia.annotations.Id;
+import dev.morphia.annotations.Index;
+import dev.morphia.annotations.Indexes;
 import dev.morphia.annotations.Property;
+import dev.morphia.annotations.Transient;
+import dev.morphia.utils.IndexType;
 import org.bson.types.ObjectId;
 
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+
 /**
  * Log entity class for MongoDB
  * Represents a system activity log entry
  */
 @Entity("logs")
+@Indexes({
+    // Logs are listed newest first and paged by (timestamp, _id), and pruned by timestamp
+    @Index(fields = {@Field(value = "timestamp", type = IndexType.DESC), @Field(value = "_id", type = IndexType.DESC)})
+})
 public class Log {
+    // Fixed-width UTC format so timestamp strings sort in time order
+    public static final DateTimeFormatter TIMESTAMP_FORMATTER =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+    // Marks an epoch day that hasn't been worked out yet
+    private static final int DAY_UNKNOWN = Integer.MAX_VALUE;
+    
     @Id
     private ObjectId id;
     
@@ -38,6 +60,15 @@ public class Log {
     @Property("timestampGmt")
     private String timestampGmt; // UK time (GMT/BST, UTC+0/+1)
     
+    @Property("createdAt")
+    private Date createdAt; // BSON date, read by the optional TTL index
+    
+    @Transient
+    private int pktEpochDay = DAY_UNKNOWN; // Pakistan date as an epoch day, worked out on first use
+    
+    @Transient
+    private String searchKey; // Lowercase text matched by the search box, built on first use
+    
     /**
      * Default constructor required by Morphia
      */
@@ -75,6 +106,7 @@ public class Log {
     
     public void setActionType(String actionType) {
         this.actionType = actionType;
+        this.searchKey = null;
     }
     
     public String getModule() {
@@ -83,6 +115,7 @@ public class Log {
     
     public void setModule(String module) {
         this.module = module;
+        this.searchKey = null;
     }
     
     public String getEntityType() {
@@ -91,6 +124,7 @@ public class Log {
     
     public void setEntityType(String entityType) {
         this.entityType = entityType;
+        this.searchKey = null;
     }
     
     public String getEntityIdentifier() {
@@ -99,6 +133,7 @@ public class Log {
     
     public void setEntityIdentifier(String entityIdentifier) {
         this.entityIdentifier = entityIdentifier;
+        this.searchKey = null;
     }
     
     public String getDetails() {
@@ -107,6 +142,7 @@ public class Log {
     
     public void setDetails(String details) {
         this.details = details;
+        this.searchKey = null;
     }
     
     public String getTimestamp() {
@@ -123,6 +159,7 @@ public class Log {
     
     public void setTimestampPkt(String timestampPkt) {
         this.timestampPkt = timestampPkt;
+        this.pktEpochDay = DAY_UNKNOWN;
     }
     
     public String getTimestampGmt() {
@@ -133,6 +170,51 @@ public class Log {
         this.timestampGmt = timestampGmt;
     }
     
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(Date createdAt) {
+        this.createdAt = createdAt;
+        this.pktEpochDay = DAY_UNKNOWN;
+    }
+    
+    /**
+     * Get the Pakistan date of the log as an epoch day for date comparisons and the date index
+     * Read from createdAt, the PKT timestamp string is only parsed for logs saved before it existed
+     * @return Days since 1970-01-01, or RowIndex.NO_DAY if the log has no valid time
+     */
+    public int getPktEpochDay() {
+        int day = pktEpochDay;
+        if (day == DAY_UNKNOWN) {
+            day = RowIndex.NO_DAY;
+            if (createdAt != null) {
+                day = (int) createdAt.toInstant().atZone(LogModel.PKT_ZONE).toLocalDate().toEpochDay();
+            } else if (timestampPkt != null && timestampPkt.length() >= 10) {
+                try {
+                    day = (int) LocalDate.parse(timestampPkt.substring(0, 10)).toEpochDay();
+                } catch (Exception e) {
+                    // Leave logs with an unreadable timestamp out of date filters
+                }
+            }
+            pktEpochDay = day;
+        }
+        return day;
+    }
+    
+    /**
+     * Get the lowercase search key for the search box
+     * @return The searchable fields joined into one lowercase string
+     */
+    public String getSearchKey() {
+        String key = searchKey;
+        if (key == null) {
+            key = IncrementalSearch.buildKey(actionType, module, entityType, details, entityIdentifier);
+            searchKey = key;
+        }
+        return key;
+    }
+    
     @Override
     public String toString() {
         return "Log{" +
@@ -0,0 +1,78 @@
+package features.logsPage;
+
+import core.EntityCodec;
+import org.bson.BsonReader;
+import org.bson.BsonWriter;
+import org.bson.types.ObjectId;
+
+/**
+ * BSON codec for Log, used instead of Morphia's reflective mapping when entity codecs are on
+ */
+public class LogCodec extends EntityCodec<Log> {
+    public LogCodec() {
+        super(Log.class);
+    }
+    
+    @Override
+    protected Log newInstance() {
+        return new Log();
+    }
+    
+    @Override
+    protected ObjectId getId(Log log) {
+        return log.getId();
+    }
+    
+    @Override
+    protected void setId(Log log, ObjectId id) {
+        log.setId(id);
+    }
+    
+    @Override
+    protected boolean readField(Log log, String name, BsonReader reader) {
+        switch (name) {
+            case "actionType":
+                log.setActionType(readString(reader));
+                return true;
+            case "module":
+                log.setModule(readString(reader));
+                return true;
+            case "entityType":
+                log.setEntityType(readString(reader));
+                return true;
+            case "entityIdentifier":
+                log.setEntityIdentifier(readString(reader));
+                return true;
+            case "details":
+                log.setDetails(readString(reader));
+                return true;
+            case "timestamp":
+                log.setTimestamp(readString(reader));
+                return true;
+            case "timestampPkt":
+                log.setTimestampPkt(readString(reader));
+                return true;
+            case "timestampGmt":
+                log.setTimestampGmt(readString(reader));
+                return true;
+            case "createdAt":
+                log.setCreatedAt(readDate(reader));
+                return true;
+            default:
+                return false;
+        }
+    }
+    
+    @Override
+    protected void writeFields(Log log, BsonWriter writer) {
+        writeString(writer, "actionType", log.getActionType());
+        writeString(writer, "module", log.getModule());
+        writeString(writer, "entityType", log.getEntityType());
+        writeString(writer, "entityIdentifier", log.getEntityIdentifier());
+        writeString(writer, "details", log.getDetails());
+        writeString(writer, "timestamp", log.getTimestamp());
+        writeString(writer, "timestampPkt", log.getTimestampPkt());
+        writeString(writer, "timestampGmt", log.getTimestampGmt());
+        writeDate(writer, "createdAt", log.getCreatedAt());
+    }
+}
@@ -1,23 +1,55 @@
 package features.logsPage;
 
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Sorts;
+import core.ConfigManager;
 import core.Connection;
 import core.NoDatabaseConnectionException;
+import core.RowIndex;
 import dev.morphia.Datastore;
-import dev.morphia.query.Query;
+import dev.morphia.query.FindOptions;
+import dev.morphia.query.Sort;
+import dev.morphia.query.filters.Filters;
+import dev.morphia.query.internal.MorphiaCursor;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import org.bson.Document;
+import org.bson.conversions.Bson;
 
 import java.time.LocalDate;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 /**
  * Model for the logs feature
  * Handles database operations for log entries
  */
 public class LogModel {
+    static final ZoneId PKT_ZONE = ZoneId.of("Asia/Karachi");
+    private static final String EXPIRY_INDEX_NAME = "createdAt_ttl";
+    private static final int EXPORT_BATCH_SIZE = 1000;
+    
     private Datastore datastore;
     private ObservableList<Log> logs;
+    // Sorted PKT day index and action/module buckets over the loaded logs, used to narrow searches
+    private RowIndex<Log> logIndex;
+    private int pageSize;
+    private boolean hasMoreLogs;
+    // Criteria the loaded pages were fetched with, null to page through all logs
+    private LogQuery activeQuery;
     
     public LogModel() {
         // Check if database is connected
@@ -33,37 +65,143 @@ public class LogModel {
         
         // Initialize observable list for logs
         logs = FXCollections.observableArrayList();
+        logIndex = new RowIndex<>(logs, Log::getPktEpochDay, Map.<String, Function<Log, String>>of(
+                LogQuery.ACTION_INDEX, Log::getActionType,
+                LogQuery.MODULE_INDEX, Log::getModule));
+        pageSize = ConfigManager.getLogPageSize();
         
-        // Load initial logs
+        // Load the most recent page of logs
         loadLogs();
     }
     
     /**
-     * Load all logs from MongoDB, sorted by timestamp descending (most recent first)
+     * Create a model over logs already in memory, without a database connection
+     * Used by the benchmarks, methods that use the database throw NoDatabaseConnectionException
+     * @param logList The logs to hold, most recent first
+     */
+    public LogModel(List<Log> logList) {
+        logs = FXCollections.observableArrayList();
+        logIndex = new RowIndex<>(logs, Log::getPktEpochDay, Map.<String, Function<Log, String>>of(
+                LogQuery.ACTION_INDEX, Log::getActionType,
+                LogQuery.MODULE_INDEX, Log::getModule));
+        pageSize = ConfigManager.getLogPageSize();
+        logs.addAll(logList);
+    }
+    
+    /**
+     * Load the most recent page of logs from MongoDB (most recent first)
+     * Only logs matching the active query are loaded, older entries are fetched on demand
+     * with loadOlderLogs()
      */
     public void loadLogs() {
         if (datastore == null) {
             throw new NoDatabaseConnectionException();
         }
         try {
-            List<Log> logList = datastore.find(Log.class)
-                    .iterator()
-                    .toList();
-            // Sort by timestamp descending (most recent first)
-            logList.sort((a, b) -> {
-                if (a.getTimestamp() == null && b.getTimestamp() == null) return 0;
-                if (a.getTimestamp() == null) return 1;
-                if (b.getTimestamp() == null) return -1;
-                return b.getTimestamp().compareTo(a.getTimestamp());
-            });
+            List<Log> page = fetchPage(null);
             logs.clear();
-            logs.addAll(logList);
+            logs.addAll(page);
         } catch (Exception e) {
             System.err.println("Error loading logs: " + e.getMessage());
             e.printStackTrace();
         }
     }
     
+    /**
+     * Search the full log history on the server and load the first page of matches
+     * Further pages of matches come from loadOlderLogs() as with the unfiltered list
+     * @param query The search criteria, or null or empty to page through all logs again
+     */
+    public void applyQuery(LogQuery query) {
+        activeQuery = query != null && !query.isEmpty() ? query : null;
+        loadLogs();
+    }
+    
+    /**
+     * Append the next page of older logs to the loaded list
+     * Continues from the oldest loaded entry (keyset pagination), so the cost
+     * of a page doesn't grow with how far back the user has scrolled
+     * @return Number of logs appended
+     */
+    public int loadOlderLogs() {
+        if (datastore == null) {
+            throw new NoDatabaseConnectionException();
+        }
+        if (!hasMoreLogs || logs.isEmpty()) {
+            return 0;
+        }
+        try {
+            List<Log> page = fetchPage(logs.get(logs.size() - 1));
+            logs.addAll(page);
+            return page.size();
+        } catch (Exception e) {
+            System.err.println("Error loading older logs: " + e.getMessage());
+            e.printStackTrace();
+            return 0;
+        }
+    }
+    
+    /**
+     * Fetch one page of logs matching the active query, sorted by (timestamp, _id) descending
+     * @param after The last log of the previous page, or null for the first page
+     * @return Up to pageSize logs
+     */
+    private List<Log> fetchPage(Log after) {
+        Bson filter = activeQuery != null ? activeQuery.toPageFilter(after) : LogQuery.olderThan(after);
+        // Ask for one extra document to know whether another page exists
+        List<Log> page = Connection.getInstance().getCollection(Log.class)
+                .find(filter)
+                .sort(Sorts.descending("timestamp", "_id"))
+                .limit(pageSize + 1)
+                .into(new ArrayList<>());
+        hasMoreLogs = page.size() > pageSize;
+        if (hasMoreLogs) {
+            page = new ArrayList<>(page.subList(0, pageSize));
+        }
+        return page;
+    }
+    
+    /**
+     * Check whether older logs remain on the server
+     * @return true if loadOlderLogs() can return more entries
+     */
+    public boolean hasMoreLogs() {
+        return hasMoreLogs;
+    }
+    
+    /**
+     * Get the number of logs fetched per page
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+    
+    /**
+     * Set the number of logs fetched per page
+     * @param pageSize Page size, must be positive
+     */
+    public void setPageSize(int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        this.pageSize = pageSize;
+    }
+    
+    /**
+     * Open a cursor over every stored log, most recent first
+     * Used for exports, which stream the full history in batches rather than the loaded pages
+     * @return Cursor over all logs, to be closed by the caller
+     */
+    public MorphiaCursor<Log> openLogCursor() {
+        if (datastore == null) {
+            throw new NoDatabaseConnectionException();
+        }
+        return datastore.find(Log.class)
+                .iterator(new FindOptions()
+                        .sort(Sort.descending("timestamp"), Sort.descending("_id"))
+                        .batchSize(EXPORT_BATCH_SIZE));
+    }
+    
     /**
      * Add a new log entry to the database
      * @param log The log to add
@@ -75,6 +213,9 @@ public class LogModel {
             return false;
         }
         try {
+            if (log.getCreatedAt() == null) {
+                log.setCreatedAt(new Date());
+            }
             datastore.save(log);
             // Reload to update observable list (add to beginning for most recent first)
             logs.add(0, log);
@@ -86,6 +227,22 @@ public class LogModel {
         }
     }
     
+    /**
+     * Show entries written by LoggingService at the top of the loaded list
+     * While a query is active only the matching entries are shown
+     * @param written Logs already saved to the database, oldest first
+     */
+    public void prependLogs(List<Log> written) {
+        List<Log> newestFirst = new ArrayList<>(written.size());
+        for (Log log : written) {
+            if (activeQuery == null || activeQuery.test(log)) {
+                newestFirst.add(log);
+            }
+        }
+        Collections.reverse(newestFirst);
+        logs.addAll(0, newestFirst);
+    }
+    
     /**
      * Search logs by action type, module, entity type, or details
      * @param query The search query string
@@ -100,11 +257,7 @@ public class LogModel {
         ObservableList<Log> results = FXCollections.observableArrayList();
         
         for (Log log : logs) {
-            if ((log.getActionType() != null && log.getActionType().toLowerCase().contains(searchTerm)) ||
-                (log.getModule() != null && log.getModule().toLowerCase().contains(searchTerm)) ||
-                (log.getEntityType() != null && log.getEntityType().toLowerCase().contains(searchTerm)) ||
-                (log.getDetails() != null && log.getDetails().toLowerCase().contains(searchTerm)) ||
-                (log.getEntityIdentifier() != null && log.getEntityIdentifier().toLowerCase().contains(searchTerm))) {
+            if (log.getSearchKey().contains(searchTerm)) {
                 results.add(log);
             }
         }
@@ -113,67 +266,44 @@ public class LogModel {
     }
     
     /**
-     * Filter logs by date range
-     * @param from Start date (inclusive)
-     * @param to End date (inclusive)
-     * @return Filtered list of logs
+     * Find the loaded logs matching all criteria in one pass
+     * Starts from the smallest candidate set the indexes can give instead of the whole list
+     * @param query The search criteria
+     * @return List of matching logs
      */
-    public ObservableList<Log> filterByDateRange(LocalDate from, LocalDate to) {
-        ObservableList<Log> results = FXCollections.observableArrayList();
-        
-        if (from == null && to == null) {
+    public ObservableList<Log> findLogs(LogQuery query) {
+        if (query.isEmpty()) {
             return logs;
         }
         
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-        
-        for (Log log : logs) {
-            if (log.getTimestampPkt() != null && !log.getTimestampPkt().isEmpty()) {
-                try {
-                    // Extract date part from timestamp (format: yyyy-MM-dd HH:mm:ss)
-                    String datePart = log.getTimestampPkt().substring(0, 10);
-                    LocalDate logDate = LocalDate.parse(datePart);
-                    
-                    boolean matches = true;
-                    if (from != null && logDate.isBefore(from)) {
-                        matches = false;
-                    }
-                    if (to != null && logDate.isAfter(to)) {
-                        matches = false;
-                    }
-                    
-                    if (matches) {
-                        results.add(log);
-                    }
-                } catch (Exception e) {
-                    // Skip invalid dates
-                }
+        Collection<Log> candidates = query.candidates(logIndex);
+        ObservableList<Log> results = FXCollections.observableArrayList();
+        for (Log log : candidates != null ? candidates : logs) {
+            if (query.test(log)) {
+                results.add(log);
             }
         }
         
         return results;
     }
     
+    /**
+     * Filter logs by date range
+     * @param from Start date (inclusive)
+     * @param to End date (inclusive)
+     * @return Filtered list of logs
+     */
+    public ObservableList<Log> filterByDateRange(LocalDate from, LocalDate to) {
+        return findLogs(new LogQuery(from, to, null, null, null));
+    }
+    
     /**
      * Filter logs by module
      * @param module The module to filter by ("Stock" or "Revenue")
      * @return Filtered list of logs
      */
     public ObservableList<Log> filterByModule(String module) {
-        if (module == null || module.trim().isEmpty()) {
-            return logs;
-        }
-        
-        ObservableList<Log> results = FXCollections.observableArrayList();
-        String searchModule = module.trim();
-        
-        for (Log log : logs) {
-            if (log.getModule() != null && log.getModule().equals(searchModule)) {
-                results.add(log);
-            }
-        }
-        
-        return results;
+        return findLogs(new LogQuery(null, null, null, module, null));
     }
     
     /**
@@ -182,69 +312,109 @@ public class LogModel {
      * @return Filtered list of logs
      */
     public ObservableList<Log> filterByActionType(String actionType) {
-        if (actionType == null || actionType.trim().isEmpty()) {
-            return logs;
-        }
-        
-        ObservableList<Log> results = FXCollections.observableArrayList();
-        String searchActionType = actionType.trim();
-        
-        for (Log log : logs) {
-            if (log.getActionType() != null && log.getActionType().equals(searchActionType)) {
-                results.add(log);
-            }
-        }
-        
-        return results;
+        return findLogs(new LogQuery(null, null, actionType, null, null));
     }
     
     /**
      * Delete logs older than specified days
+     * Runs as a single deleteMany on the indexed timestamp range
      * @param daysToKeep Number of days to keep (logs older than this will be deleted)
      * @return Number of logs deleted
      */
-    public int deleteOldLogs(int daysToKeep) {
+    public long deleteOldLogs(int daysToKeep) {
         if (datastore == null) {
             throw new NoDatabaseConnectionException();
         }
         try {
-            LocalDate cutoffDate = LocalDate.now().minusDays(daysToKeep);
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-            String cutoffDateStr = cutoffDate.format(formatter);
+            // Logs dated (Pakistan time) before the cutoff day are removed
+            LocalDate cutoffDate = LocalDate.now(PKT_ZONE).minusDays(daysToKeep);
+            String cutoff = Log.TIMESTAMP_FORMATTER.format(cutoffDate.atStartOfDay(PKT_ZONE));
+            
+            long deletedCount = Connection.getInstance().getCollection(Log.class)
+                    .deleteMany(new Document("timestamp", new Document("$lt", cutoff)))
+                    .getDeletedCount();
             
-            int deletedCount = 0;
-            ObservableList<Log> logsToDelete = FXCollections.observableArrayList();
+            // Drop the same entries from the loaded pages instead of reloading
+            logs.removeIf(log -> log.getTimestamp() != null && log.getTimestamp().compareTo(cutoff) < 0);
             
-            for (Log log : logs) {
-                if (log.getTimestampPkt() != null && !log.getTimestampPkt().isEmpty()) {
-                    try {
-                        String datePart = log.getTimestampPkt().substring(0, 10);
-                        if (datePart.compareTo(cutoffDateStr) < 0) {
-                            logsToDelete.add(log);
-                        }
-                    } catch (Exception e) {
-                        // Skip invalid dates
-                    }
+            return deletedCount;
+        } catch (Exception e) {
+            System.err.println("Error deleting old logs: " + e.getMessage());
+            e.printStackTrace();
+            return 0;
+        }
+    }
+    
+    /**
+     * Let MongoDB expire logs automatically with a TTL index on createdAt
+     * Logs written before createdAt existed get one from their timestamp when the index is created
+     * @param datastore Datastore to configure
+     * @param daysToKeep Days to keep logs, 0 or less removes the TTL index
+     * @return true if successful, false otherwise
+     */
+    public static boolean applyAutomaticExpiry(Datastore datastore, int daysToKeep) {
+        if (datastore == null) {
+            throw new NoDatabaseConnectionException();
+        }
+        try {
+            MongoCollection<Document> collection = datastore.getDatabase().getCollection("logs");
+            boolean exists = false;
+            for (Document index : collection.listIndexes()) {
+                if (EXPIRY_INDEX_NAME.equals(index.getString("name"))) {
+                    exists = true;
                 }
             }
             
-            for (Log log : logsToDelete) {
-                Query<Log> query = datastore.find(Log.class).filter("_id", log.getId());
-                datastore.delete(query);
-                deletedCount++;
+            if (daysToKeep <= 0) {
+                if (exists) {
+                    collection.dropIndex(EXPIRY_INDEX_NAME);
+                }
+                return true;
             }
             
-            // Reload logs
-            loadLogs();
-            
-            return deletedCount;
+            long expireAfterSeconds = TimeUnit.DAYS.toSeconds(daysToKeep);
+            if (exists) {
+                // Change the expiry of the existing index in place
+                datastore.getDatabase().runCommand(new Document("collMod", "logs")
+                        .append("index", new Document("name", EXPIRY_INDEX_NAME)
+                                .append("expireAfterSeconds", expireAfterSeconds)));
+            } else {
+                migrateLogDates(collection);
+                collection.createIndex(Indexes.ascending("createdAt"),
+                        new IndexOptions().name(EXPIRY_INDEX_NAME).expireAfter(expireAfterSeconds, TimeUnit.SECONDS));
+            }
+            return true;
         } catch (Exception e) {
-            System.err.println("Error deleting old logs: " + e.getMessage());
+            System.err.println("Error configuring log expiry: " + e.getMessage());
             e.printStackTrace();
-            return 0;
+            return false;
         }
     }
     
+    /**
+     * Give logs written before createdAt existed a BSON date converted from their UTC timestamp
+     * Runs as one update on the server, logs with an unreadable timestamp get a null createdAt
+     * @param collection The logs collection
+     * @return Number of logs converted
+     */
+    private static long migrateLogDates(MongoCollection<Document> collection) {
+        Document toDate = new Document("$dateFromString", new Document("dateString", "$timestamp")
+                .append("onError", null)
+                .append("onNull", null));
+        return collection.updateMany(
+                new Document("createdAt", new Document("$exists", false)),
+                Collections.singletonList(new Document("$set", new Document("createdAt", toDate))))
+                .getModifiedCount();
+    }
+    
+    /**
+     * Get the in-memory indexes over the loaded logs
+     * @return Index sorted by PKT day with action type and module hash indexes
+     */
+    public RowIndex<Log> getLogIndex() {
+        return logIndex;
+    }
+    
     /**
      * Get all logs
      * @return ObservableList of all logs
@@ -254,16 +424,75 @@ public class LogModel {
     }
     
     /**
-     * Get total number of logs
+     * Count all logs stored on the server
      * @return Total log count
      */
+    public long countAllLogs() {
+        if (datastore == null) {
+            throw new NoDatabaseConnectionException();
+        }
+        return Connection.getInstance().getCollection(Log.class).estimatedDocumentCount();
+    }
+    
+    /**
+     * Count the stored logs matching the active query, not just the loaded pages
+     * @return Count of matching logs, or of all logs if no query is active
+     */
+    public long countMatchingLogs() {
+        if (datastore == null) {
+            throw new NoDatabaseConnectionException();
+        }
+        if (activeQuery == null) {
+            return countAllLogs();
+        }
+        return Connection.getInstance().getCollection(Log.class).countDocuments(activeQuery.toFilter());
+    }
+    
+    /**
+     * Count logs written since midnight Pakistan time, using the timestamp index
+     * @return Count of logs from today
+     */
+    public long countActionsToday() {
+        if (datastore == null) {
+            throw new NoDatabaseConnectionException();
+        }
+        String startOfToday = Log.TIMESTAMP_FORMATTER.format(LocalDate.now(PKT_ZONE).atStartOfDay(PKT_ZONE));
+        return datastore.find(Log.class)
+                .filter(Filters.gte("timestamp", startOfToday))
+                .count();
+    }
+    
+    /**
+     * Find the most frequent action type across all stored logs
+     * @return Most frequent action type, or "-" if no logs
+     */
+    public String findMostCommonAction() {
+        if (datastore == null) {
+            throw new NoDatabaseConnectionException();
+        }
+        Document top = datastore.getDatabase().getCollection("logs")
+                .aggregate(Arrays.asList(
+                        Aggregates.group("$actionType", Accumulators.sum("count", 1)),
+                        Aggregates.sort(Sorts.descending("count")),
+                        Aggregates.limit(1)))
+                .first();
+        if (top == null || top.getString("_id") == null) {
+            return "-";
+        }
+        return top.getString("_id");
+    }
+    
+    /**
+     * Get number of loaded logs
+     * @return Loaded log count
+     */
     public int getTotalLogs() {
         return logs.size();
     }
     
     /**
-     * Get number of actions today
-     * @return Count of logs from today
+     * Get number of loaded actions from today
+     * @return Count of loaded logs from today
      */
     public int getActionsToday() {
         LocalDate today = LocalDate.now();
@@ -280,7 +509,7 @@ public class LogModel {
     }
     
     /**
-     * Get most common action type
+     * Get most common action type among the loaded logs
      * @return Most frequent action type, or "-" if no logs
      */
     public String getMostCommonAction() {
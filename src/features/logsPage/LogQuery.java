@@ -0,0 +1,205 @@
+package features.logsPage;
+
+import com.mongodb.client.model.Filters;
+import core.RowIndex;
+import org.bson.conversions.Bson;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Search criteria for the logs page: date range, action type, module and search text
+ * All active conditions are checked together in one pass. The same criteria can pick the
+ * smallest candidate set from the in-memory indexes or compile into a MongoDB filter
+ */
+public class LogQuery implements Predicate<Log> {
+    /** Name of the action type hash index in the index built by LogModel */
+    public static final String ACTION_INDEX = "actionType";
+    /** Name of the module hash index in the index built by LogModel */
+    public static final String MODULE_INDEX = "module";
+    
+    private final LocalDate fromDate;
+    private final LocalDate toDate;
+    private final int fromDay;
+    private final int toDay;
+    private final String actionType;
+    private final String module;
+    private final String text;
+    
+    /**
+     * Create criteria, any argument may be null or empty to leave it out
+     * @param from Start date (inclusive, Pakistan time)
+     * @param to End date (inclusive, Pakistan time)
+     * @param actionType Action type
+     * @param module Module
+     * @param text Search text matched against the searchable log fields
+     */
+    public LogQuery(LocalDate from, LocalDate to, String actionType, String module, String text) {
+        this.fromDate = from;
+        this.toDate = to;
+        this.fromDay = from != null ? (int) from.toEpochDay() : RowIndex.NO_DAY;
+        this.toDay = to != null ? (int) to.toEpochDay() : RowIndex.NO_DAY;
+        this.actionType = actionType != null && !actionType.trim().isEmpty() ? actionType.trim() : null;
+        this.module = module != null && !module.trim().isEmpty() ? module.trim() : null;
+        this.text = text != null && !text.trim().isEmpty() ? text.trim().toLowerCase() : null;
+    }
+    
+    /**
+     * Check whether no condition is set
+     * @return true if every log matches
+     */
+    public boolean isEmpty() {
+        return !hasFilters() && text == null;
+    }
+    
+    /**
+     * Check whether a date, action or module condition is set
+     * @return true if the criteria restrict more than the search text
+     */
+    public boolean hasFilters() {
+        return fromDate != null || toDate != null || actionType != null || module != null;
+    }
+    
+    /**
+     * Check all conditions against a log
+     * @param log The log
+     * @return true if the log matches
+     */
+    @Override
+    public boolean test(Log log) {
+        return matchesFilters(log) && (text == null || log.getSearchKey().contains(text));
+    }
+    
+    /**
+     * Check the date, action and module conditions only, leaving the search text to the search box
+     * @param log The log
+     * @return true if the log matches
+     */
+    public boolean matchesFilters(Log log) {
+        if (actionType != null && !actionType.equals(log.getActionType())) {
+            return false;
+        }
+        if (module != null && !module.equals(log.getModule())) {
+            return false;
+        }
+        if (fromDate == null && toDate == null) {
+            return true;
+        }
+        // Compares the cached epoch day, so no per-row parsing or allocation is needed
+        int day = log.getPktEpochDay();
+        if (day == RowIndex.NO_DAY) {
+            return false;
+        }
+        return (fromDate == null || day >= fromDay) && (toDate == null || day <= toDay);
+    }
+    
+    /**
+     * Pick the smallest set of logs that can match from the in-memory indexes
+     * Compares the action and module buckets with the date range and starts from the smallest
+     * @param index Index over the loaded logs
+     * @return Candidate logs still to be checked with test(), or null to scan all logs
+     */
+    public Collection<Log> candidates(RowIndex<Log> index) {
+        Collection<Log> best = null;
+        if (actionType != null) {
+            best = index.bucket(ACTION_INDEX, actionType);
+        }
+        if (module != null) {
+            Collection<Log> byModule = index.bucket(MODULE_INDEX, module);
+            if (best == null || byModule.size() < best.size()) {
+                best = byModule;
+            }
+        }
+        if (fromDate == null && toDate == null) {
+            return best;
+        }
+        if (best != null && best.size() <= index.countRange(fromDay, toDay)) {
+            return best;
+        }
+        return index.range(fromDay, toDay);
+    }
+    
+    /**
+     * Compile the criteria into a MongoDB filter over the logs collection
+     * Dates are turned into bounds on the indexed UTC timestamp, the search text becomes a
+     * case-insensitive regex over the searched fields
+     * @return The filter, empty if no condition is set
+     */
+    public Bson toFilter() {
+        List<Bson> conditions = new ArrayList<>();
+        // A Pakistan day runs from its PKT midnight up to the next one
+        if (fromDate != null) {
+            conditions.add(Filters.gte("timestamp",
+                    Log.TIMESTAMP_FORMATTER.format(fromDate.atStartOfDay(LogModel.PKT_ZONE))));
+        }
+        if (toDate != null) {
+            conditions.add(Filters.lt("timestamp",
+                    Log.TIMESTAMP_FORMATTER.format(toDate.plusDays(1).atStartOfDay(LogModel.PKT_ZONE))));
+        }
+        if (actionType != null) {
+            conditions.add(Filters.eq("actionType", actionType));
+        }
+        if (module != null) {
+            conditions.add(Filters.eq("module", module));
+        }
+        if (text != null) {
+            Pattern pattern = Pattern.compile(Pattern.quote(text), Pattern.CASE_INSENSITIVE);
+            conditions.add(Filters.or(
+                    Filters.regex("actionType", pattern),
+                    Filters.regex("module", pattern),
+                    Filters.regex("entityType", pattern),
+                    Filters.regex("details", pattern),
+                    Filters.regex("entityIdentifier", pattern)));
+        }
+        return conditions.isEmpty() ? Filters.empty() : Filters.and(conditions);
+    }
+    
+    /**
+     * Compile the criteria into a filter for the page of matching logs after a given log
+     * @param last The last log of the previous page, or null for the first page
+     * @return The filter
+     */
+    public Bson toPageFilter(Log last) {
+        return last == null ? toFilter() : Filters.and(toFilter(), olderThan(last));
+    }
+    
+    /**
+     * Build the filter for the page of logs after a given log in (timestamp, _id) descending order
+     * @param last The last log of the previous page, or null for the first page
+     * @return The filter, empty for the first page
+     */
+    public static Bson olderThan(Log last) {
+        if (last == null) {
+            return Filters.empty();
+        }
+        return Filters.or(
+                Filters.lt("timestamp", last.getTimestamp()),
+                Filters.and(Filters.eq("timestamp", last.getTimestamp()),
+                            Filters.lt("_id", last.getId())));
+    }
+    
+    // Getters
+    public LocalDate getFromDate() {
+        return fromDate;
+    }
+    
+    public LocalDate getToDate() {
+        return toDate;
+    }
+    
+    public String getActionType() {
+        return actionType;
+    }
+    
+    public String getModule() {
+        return module;
+    }
+    
+    public String getText() {
+        return text;
+    }
+}
@@ -1,29 +1,27 @@
 package features.logsPage;
 
-import features.revenue.RevenueController;
-import features.revenue.RevenueModel;
-import features.stock.StockController;
-import features.stock.StockModel;
-import javafx.application.Platform;
-import javafx.collections.ObservableList;
+import core.CsvExportTask;
+import core.IncrementalSearch;
+import core.PageNavigator;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
+import javafx.geometry.Orientation;
+import javafx.scene.Node;
 import javafx.scene.control.*;
 import javafx.scene.layout.AnchorPane;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
 import java.io.File;
-import java.io.PrintWriter;
 import java.net.URL;
 import java.time.LocalDate;
 import java.util.ResourceBundle;
 
 public class LogsController implements Initializable {
     private LogModel model;
+    private CsvExportTask<Log> exportTask;
+    private IncrementalSearch<Log> search;
+    private String exportButtonText;
     @FXML private AnchorPane contentArea;
     
     // Buttons
@@ -58,15 +56,21 @@ public class LogsController implements Initializable {
     @FXML private AnchorPane clearLogsDialog;
     @FXML private Label clearLogsInfoLabel;
     
+    private ScrollBar pagingScrollBar;
+    
     /**
      * Initialize the controller with the model
      */
     public void setModel(LogModel model) {
         this.model = model;
+        if (logsTable != null) {
+            logsTable.setPlaceholder(new Label("No logs"));
+        }
         setupTableView();
         bindModelToView();
         updateStatistics();
         initializeFilterComboBoxes();
+        setupScrollPaging();
     }
     
     @Override
@@ -74,11 +78,11 @@ public class LogsController implements Initializable {
         // Set up table columns
         setupTableColumns();
         
-        // Initialize model if not already set (fallback)
-        if (model == null) {
-            model = new LogModel();
-            setModel(model);
+        // Show the page straight away and load logs in the background
+        if (logsTable != null) {
+            logsTable.setPlaceholder(new Label("Loading logs..."));
         }
+        PageNavigator.loadModel(LogModel::new, this::setModel, this::getStage);
     }
     
     /**
@@ -116,7 +120,10 @@ public class LogsController implements Initializable {
      */
     private void setupTableView() {
         if (logsTable != null && model != null) {
-            logsTable.setItems(model.getLogs());
+            // The table shows a live filtered view of the loaded logs
+            search = new IncrementalSearch<>(model.getLogs(), Log::getSearchKey);
+            search.getView().comparatorProperty().bind(logsTable.comparatorProperty());
+            search.setOnChange(this::showFilteredCount);
         }
     }
     
@@ -124,8 +131,51 @@ public class LogsController implements Initializable {
      * Bind model data to view elements
      */
     private void bindModelToView() {
-        if (model != null && logsTable != null) {
-            logsTable.setItems(model.getLogs());
+        if (search != null && logsTable != null) {
+            logsTable.setItems(search.getView());
+            
+            if (searchBox != null) {
+                searchBox.textProperty().addListener((obs, oldText, newText) -> search.schedule(newText));
+            }
+        }
+    }
+    
+    /**
+     * Load older pages of logs as the table is scrolled to the bottom
+     * The scroll bar only exists once the table skin is created, so attach on skin change too
+     */
+    private void setupScrollPaging() {
+        if (logsTable == null) return;
+        
+        attachPagingScrollBar();
+        logsTable.skinProperty().addListener((obs, oldSkin, newSkin) -> attachPagingScrollBar());
+    }
+    
+    private void attachPagingScrollBar() {
+        if (pagingScrollBar != null) return;
+        
+        for (Node node : logsTable.lookupAll(".scroll-bar")) {
+            if (node instanceof ScrollBar && ((ScrollBar) node).getOrientation() == Orientation.VERTICAL) {
+                pagingScrollBar = (ScrollBar) node;
+                pagingScrollBar.valueProperty().addListener((obs, oldVal, newVal) -> {
+                    if (newVal.doubleValue() >= pagingScrollBar.getMax()) {
+                        loadOlderLogs();
+                    }
+                });
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Fetch the next page of older logs, or of older matches while a search is active
+     */
+    private void loadOlderLogs() {
+        if (model == null) {
+            return;
+        }
+        if (model.hasMoreLogs()) {
+            model.loadOlderLogs();
         }
     }
     
@@ -147,16 +197,22 @@ public class LogsController implements Initializable {
     private void updateStatistics() {
         if (model == null) return;
         
-        if (totalLogsLabel != null) {
-            totalLogsLabel.setText(String.valueOf(model.getTotalLogs()));
-        }
-        
-        if (actionsTodayLabel != null) {
-            actionsTodayLabel.setText(String.valueOf(model.getActionsToday()));
-        }
-        
-        if (mostCommonActionLabel != null) {
-            mostCommonActionLabel.setText(model.getMostCommonAction());
+        // Only the newest pages are loaded, so the totals come from the server
+        try {
+            if (totalLogsLabel != null) {
+                totalLogsLabel.setText(String.valueOf(model.countMatchingLogs()));
+            }
+            
+            if (actionsTodayLabel != null) {
+                actionsTodayLabel.setText(String.valueOf(model.countActionsToday()));
+            }
+            
+            if (mostCommonActionLabel != null) {
+                mostCommonActionLabel.setText(model.findMostCommonAction());
+            }
+        } catch (Exception e) {
+            System.err.println("Error loading log statistics: " + e.getMessage());
+            e.printStackTrace();
         }
     }
     
@@ -189,6 +245,11 @@ public class LogsController implements Initializable {
             showAlert(Alert.AlertType.ERROR, "Error", "Model not initialized");
             return;
         }
+        if (exportTask != null) {
+            // Pressing export while an export runs cancels it (the partial file is deleted)
+            exportTask.cancel();
+            return;
+        }
         
         try {
             // Get the stage from any node
@@ -203,8 +264,9 @@ public class LogsController implements Initializable {
             // Create file chooser
             FileChooser fileChooser = new FileChooser();
             fileChooser.setTitle("Export Logs to CSV");
-            fileChooser.getExtensionFilters().add(
-                new FileChooser.ExtensionFilter("CSV Files", "*.csv")
+            fileChooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("CSV Files", "*.csv"),
+                new FileChooser.ExtensionFilter("Compressed CSV Files", "*.csv.gz")
             );
             fileChooser.setInitialFileName("logs_export_" + LocalDate.now().format(java.time.format.DateTimeFormatter.ISO_LOCAL_DATE) + ".csv");
             
@@ -212,26 +274,38 @@ public class LogsController implements Initializable {
             File file = fileChooser.showSaveDialog(stage);
             
             if (file != null) {
-                // Write CSV file
-                try (PrintWriter writer = new PrintWriter(file)) {
-                    // Write header
-                    writer.println("Time (PKT),Time (GMT/BST),Action,Module,Entity,Details");
-                    
-                    // Write data
-                    for (Log log : model.getLogs()) {
-                        writer.printf("%s,%s,%s,%s,%s,%s%n",
-                            escapeCsvField(log.getTimestampPkt() != null ? log.getTimestampPkt() : ""),
-                            escapeCsvField(log.getTimestampGmt() != null ? log.getTimestampGmt() : ""),
-                            escapeCsvField(log.getActionType() != null ? log.getActionType() : ""),
-                            escapeCsvField(log.getModule() != null ? log.getModule() : ""),
-                            escapeCsvField(log.getEntityType() != null ? log.getEntityType() : ""),
-                            escapeCsvField(log.getDetails() != null ? log.getDetails() : "")
-                        );
-                    }
-                }
+                // Stream the full history (not just the loaded pages) on a background task
+                CsvExportTask<Log> task = new CsvExportTask<>(file,
+                    "Time (PKT),Time (GMT/BST),Action,Module,Entity,Details",
+                    model::openLogCursor,
+                    model::countAllLogs,
+                    (log, csv) -> csv
+                        .field(log.getTimestampPkt())
+                        .field(log.getTimestampGmt())
+                        .field(log.getActionType())
+                        .field(log.getModule())
+                        .field(log.getEntityType())
+                        .field(log.getDetails()));
                 
-                showAlert(Alert.AlertType.INFORMATION, "Success", 
-                    "Logs exported successfully to:\n" + file.getAbsolutePath());
+                task.setOnSucceeded(event -> {
+                    finishExport();
+                    showAlert(Alert.AlertType.INFORMATION, "Success", 
+                        "Logs exported successfully to:\n" + file.getAbsolutePath());
+                });
+                task.setOnFailed(event -> {
+                    finishExport();
+                    showAlert(Alert.AlertType.ERROR, "Export Error", 
+                        "Failed to export logs: " + task.getException().getMessage());
+                    task.getException().printStackTrace();
+                });
+                task.setOnCancelled(event -> finishExport());
+                
+                exportTask = task;
+                if (exportBtn != null) {
+                    exportButtonText = exportBtn.getText();
+                    exportBtn.textProperty().bind(task.messageProperty());
+                }
+                CsvExportTask.start(task);
             }
         } catch (Exception e) {
             showAlert(Alert.AlertType.ERROR, "Export Error", 
@@ -240,6 +314,17 @@ public class LogsController implements Initializable {
         }
     }
     
+    /**
+     * Restore the export button once the export task has ended
+     */
+    private void finishExport() {
+        exportTask = null;
+        if (exportBtn != null) {
+            exportBtn.textProperty().unbind();
+            exportBtn.setText(exportButtonText);
+        }
+    }
+    
     @FXML
     private void handleClearOldLogs() {
         if (clearLogsDialog != null) {
@@ -262,7 +347,7 @@ public class LogsController implements Initializable {
         
         try {
             int daysToKeep = 30; // Keep logs from last 30 days
-            int deletedCount = model.deleteOldLogs(daysToKeep);
+            long deletedCount = model.deleteOldLogs(daysToKeep);
             
             showAlert(Alert.AlertType.INFORMATION, "Success", 
                 "Deleted " + deletedCount + " old log entries");
@@ -293,53 +378,33 @@ public class LogsController implements Initializable {
     
     @FXML
     private void handleSearch() {
-        if (model == null) return;
-        
-        ObservableList<Log> results = model.getLogs();
+        if (search == null) return;
         
-        // Apply text search
-        if (searchBox != null && !searchBox.getText().trim().isEmpty()) {
-            results = model.searchLogs(searchBox.getText());
-        }
-        
-        // Apply date filter
-        LocalDate fromDate = dateFromPicker != null ? dateFromPicker.getValue() : null;
-        LocalDate toDate = dateToPicker != null ? dateToPicker.getValue() : null;
-        if (fromDate != null || toDate != null) {
-            ObservableList<Log> dateFiltered = model.filterByDateRange(fromDate, toDate);
-            // Intersect with search results
-            if (searchBox != null && !searchBox.getText().trim().isEmpty()) {
-                dateFiltered.retainAll(results);
-            }
-            results = dateFiltered;
-        }
-        
-        // Apply action type filter
-        if (filterActionType != null && filterActionType.getSelectionModel().getSelectedItem() != null) {
-            String selectedAction = filterActionType.getSelectionModel().getSelectedItem();
-            ObservableList<Log> actionFiltered = model.filterByActionType(selectedAction);
-            // Intersect with previous results
-            actionFiltered.retainAll(results);
-            results = actionFiltered;
-        }
+        // Only the newest pages are loaded, so the search runs over the full history on the
+        // server and its matches are paged in like the unfiltered list
+        LogQuery query = new LogQuery(
+            dateFromPicker != null ? dateFromPicker.getValue() : null,
+            dateToPicker != null ? dateToPicker.getValue() : null,
+            filterActionType != null ? filterActionType.getSelectionModel().getSelectedItem() : null,
+            filterEntity != null ? filterEntity.getSelectionModel().getSelectedItem() : null,
+            searchBox != null ? searchBox.getText() : null);
         
-        // Apply module filter
-        if (filterEntity != null && filterEntity.getSelectionModel().getSelectedItem() != null) {
-            String selectedModule = filterEntity.getSelectionModel().getSelectedItem();
-            ObservableList<Log> moduleFiltered = model.filterByModule(selectedModule);
-            // Intersect with previous results
-            moduleFiltered.retainAll(results);
-            results = moduleFiltered;
-        }
-        
-        // Update table
-        if (logsTable != null) {
-            logsTable.setItems(results);
-        }
+        model.applyQuery(query);
+        // Every loaded log now matches, typing again narrows the loaded matches until the next search.
+        // Clearing the local search also shows the server's count of matches
+        search.clear();
+    }
+    
+    /**
+     * Show the number of matching loaded logs while typing narrows the list
+     */
+    private void showFilteredCount() {
+        if (search == null || totalLogsLabel == null) return;
         
-        // Update statistics for filtered results
-        if (totalLogsLabel != null) {
-            totalLogsLabel.setText(String.valueOf(results.size()));
+        if (search.isActive()) {
+            totalLogsLabel.setText(String.valueOf(search.getView().size()));
+        } else {
+            updateStatistics();
         }
     }
     
@@ -360,22 +425,13 @@ public class LogsController implements Initializable {
         if (filterEntity != null) {
             filterEntity.getSelectionModel().clearSelection();
         }
-        // Refresh to show all logs
-        handleRefresh();
-    }
-    
-    /**
-     * Escape CSV field if it contains commas or quotes
-     */
-    private String escapeCsvField(String field) {
-        if (field == null) {
-            return "";
+        // Page through all logs again, clearing the local search then shows the full count
+        if (model != null) {
+            model.applyQuery(null);
         }
-        // If field contains comma, quote, or newline, wrap in quotes and escape quotes
-        if (field.contains(",") || field.contains("\"") || field.contains("\n")) {
-            return "\"" + field.replace("\"", "\"\"") + "\"";
+        if (search != null) {
+            search.clear();
         }
-        return field;
     }
     
     // Navigation handlers
@@ -404,42 +460,19 @@ public class LogsController implements Initializable {
         navigateToPage("../homepage/homepage.fxml", "Home");
     }
     
+    /**
+     * Get the current stage
+     */
+    private Stage getStage() {
+        if (contentArea != null && contentArea.getScene() != null) {
+            return (Stage) contentArea.getScene().getWindow();
+        }
+        return null;
+    }
+    
     private void navigateToPage(String fxmlPath, String title) {
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource(fxmlPath));
-            Parent root = loader.load();
-            
-            // Special handling for stock page - initialize model
-            if (fxmlPath.contains("stock.fxml")) {
-                StockController controller = loader.getController();
-                StockModel stockModel = new StockModel();
-                controller.setModel(stockModel);
-            }
-            // Special handling for revenue page - initialize model
-            else if (fxmlPath.contains("revenue.fxml")) {
-                RevenueController controller = loader.getController();
-                RevenueModel revenueModel = new RevenueModel();
-                controller.setModel(revenueModel);
-            }
-            // Special handling for logs page - initialize model
-            else if (fxmlPath.contains("log.fxml")) {
-                LogsController controller = loader.getController();
-                LogModel logModel = new LogModel();
-                controller.setModel(logModel);
-            }
-            
-            Stage stage = (Stage) (contentArea != null ? contentArea.getScene().getWindow() : null);
-            if (stage != null) {
-                Scene scene = new Scene(root, 1100, 700);
-                stage.setScene(scene);
-                stage.setTitle(title);
-                
-                // Force layout recalculation
-                Platform.runLater(() -> {
-                    stage.sizeToScene();
-                    root.requestLayout();
-                });
-            }
+            PageNavigator.navigateTo(getStage(), getClass().getResource(fxmlPath), title);
         } catch (Exception e) {
             Alert alert = new Alert(Alert.AlertType.ERROR);
             alert.setTitle("Navigation Error");
@@ -0,0 +1,17 @@
+package features.revenue;
+
+/**
+ * Exception thrown when a sale would take a product's stock below zero
+ */
+public class OutOfStockException extends RuntimeException {
+    private final String sku;
+    
+    public OutOfStockException(String sku) {
+        super("Product " + sku + " is out of stock or no longer exists");
+        this.sku = sku;
+    }
+    
+    public String getSku() {
+        return sku;
+    }
+}
@@ -1,35 +1,44 @@
 package features.revenue;
 
+import core.ConflictingUpdateException;
+import core.CsvExportTask;
+import core.CsvImportTask;
 import core.DatabaseAccessHandler;
+import core.IncrementalSearch;
 import core.LoggingService;
 import core.ConfigManager;
 import core.NoDatabaseConnectionException;
+import core.PageNavigator;
 import features.revenue.RevenueModel;
 import features.revenue.Sale;
 import features.stock.Product;
-import features.stock.StockController;
-import features.stock.StockModel;
-import javafx.application.Platform;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.AnchorPane;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
 import java.io.File;
-import java.io.PrintWriter;
 import java.net.URL;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.ResourceBundle;
+import java.util.Set;
 
 public class RevenueController implements Initializable {
+    private static final int MAX_SHOWN_IMPORT_ERRORS = 20;
+    
     private RevenueModel model;
+    private CsvExportTask<Sale> exportTask;
+    private CsvImportTask<Sale> importTask;
+    private IncrementalSearch<Sale> search;
+    // Date and product filters applied by the last search
+    private SaleQuery filterQuery;
     @FXML private AnchorPane contentArea;
     
     // Buttons
@@ -38,6 +47,7 @@ public class RevenueController implements Initializable {
     @FXML private Button deleteSaleBtn;
     @FXML private Button refreshBtn;
     @FXML private Button exportBtn;
+    @FXML private Button importBtn;
     @FXML private Button searchBtn;
     @FXML private Button clearFilterBtn;
     
@@ -104,6 +114,9 @@ public class RevenueController implements Initializable {
      */
     public void setModel(RevenueModel model) {
         this.model = model;
+        if (salesTable != null) {
+            salesTable.setPlaceholder(new Label("No sales"));
+        }
         setupTableView();
         bindModelToView();
         updateStatistics();
@@ -128,14 +141,13 @@ public class RevenueController implements Initializable {
     @Override
     public void initialize(URL location, ResourceBundle resources) {
         // This is called after FXML loading
-        // Set up table columns (model will be set separately by navigation or setModel)
         setupTableColumns();
         
-        // Initialize model if not already set (fallback for direct navigation)
-        if (model == null) {
-            model = new RevenueModel();
-            setModel(model);
+        // Show the page straight away and load sales in the background
+        if (salesTable != null) {
+            salesTable.setPlaceholder(new Label("Loading sales..."));
         }
+        PageNavigator.loadModel(RevenueModel::new, this::setModel, this::getStage);
     }
     
     /**
@@ -270,7 +282,13 @@ public class RevenueController implements Initializable {
      */
     private void setupTableView() {
         if (salesTable != null && model != null) {
-            salesTable.setItems(model.getSales());
+            // The table shows a live filtered view of the model list
+            search = new IncrementalSearch<>(model.getSales(), Sale::getSearchKey);
+            search.getView().comparatorProperty().bind(salesTable.comparatorProperty());
+            search.setOnChange(this::updateStatistics);
+            
+            // Several rows can be selected for bulk delete
+            salesTable.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
         }
     }
     
@@ -278,8 +296,12 @@ public class RevenueController implements Initializable {
      * Bind model data to view elements
      */
     private void bindModelToView() {
-        if (model != null && salesTable != null) {
-            salesTable.setItems(model.getSales());
+        if (search != null && salesTable != null) {
+            salesTable.setItems(search.getView());
+            
+            if (searchBox != null) {
+                searchBox.textProperty().addListener((obs, oldText, newText) -> search.schedule(newText));
+            }
         }
     }
     
@@ -352,7 +374,7 @@ public class RevenueController implements Initializable {
                 return;
             }
             
-            Product product = model.getProductBySku(sku);
+            Product product = model.findCachedProduct(sku);
             if (product == null) {
                 if (addNetProfitField != null) {
                     addNetProfitField.clear();
@@ -398,7 +420,7 @@ public class RevenueController implements Initializable {
         try {
             double salePrice = Double.parseDouble(editSalePriceField.getText().trim());
             String sku = editSkuField.getText().trim();
-            Product product = model.getProductBySku(sku);
+            Product product = model.findCachedProduct(sku);
             
             if (product != null) {
                 double baseCostGbp = RevenueModel.convertPkrToGbp(product.getBaseCostPkr());
@@ -427,28 +449,37 @@ public class RevenueController implements Initializable {
     private void updateStatistics() {
         if (model == null) return;
         
-        if (totalTransactionsLabel != null) {
-            totalTransactionsLabel.setText(String.valueOf(model.getSales().size()));
+        if (search == null || !search.isActive()) {
+            showStatistics(model.calculateStatistics());
+            return;
         }
         
+        // Without a text search the filter is a plain date/SKU match, totalled from the daily rollup or the sales columns
+        if (search.getQuery().isEmpty() && filterQuery != null) {
+            showStatistics(model.calculateStatistics(filterQuery));
+        } else {
+            showStatistics(model.calculateStatistics(search.getView()));
+        }
+    }
+    
+    /**
+     * Show statistics in the summary labels
+     */
+    private void showStatistics(RevenueStatistics statistics) {
+        if (totalTransactionsLabel != null) {
+            totalTransactionsLabel.setText(String.valueOf(statistics.getTransactionCount()));
+        }
         if (totalRevenueLabel != null) {
-            double totalRevenue = model.calculateTotalRevenue();
-            totalRevenueLabel.setText(String.format("%.2f GBP", totalRevenue));
+            totalRevenueLabel.setText(String.format("%.2f GBP", statistics.getTotalRevenue()));
         }
-        
         if (totalProfitLabel != null) {
-            double totalProfit = model.calculateTotalProfit();
-            totalProfitLabel.setText(String.format("%.2f GBP", totalProfit));
+            totalProfitLabel.setText(String.format("%.2f GBP", statistics.getTotalProfit()));
         }
-        
         if (totalFeesLabel != null) {
-            double totalFees = model.calculateTotalFees();
-            totalFeesLabel.setText(String.format("%.2f GBP", totalFees));
+            totalFeesLabel.setText(String.format("%.2f GBP", statistics.getTotalFees()));
         }
-        
         if (avgMarginLabel != null) {
-            double avgMargin = model.calculateAverageMargin();
-            avgMarginLabel.setText(String.format("%.2f%%", avgMargin));
+            avgMarginLabel.setText(String.format("%.2f%%", statistics.getAverageMargin()));
         }
     }
     
@@ -466,10 +497,10 @@ public class RevenueController implements Initializable {
     // Main action handlers
     @FXML
     private void handleAddSale() {
-        // Ensure model is initialized
+        // Sales are still loading in the background
         if (model == null) {
-            model = new RevenueModel();
-            setModel(model);
+            showAlert(Alert.AlertType.INFORMATION, "Loading", "Sales are still loading, please try again in a moment");
+            return;
         }
         
         if (addSaleDialog != null) {
@@ -503,6 +534,10 @@ public class RevenueController implements Initializable {
             showAlert(Alert.AlertType.WARNING, "No Selection", "Please select a sale to edit");
             return;
         }
+        if (salesTable.getSelectionModel().getSelectedItems().size() > 1) {
+            showAlert(Alert.AlertType.WARNING, "Multiple Selection", "Please select a single sale to edit");
+            return;
+        }
         
         // Populate edit dialog fields
         if (editTransactionIdField != null) editTransactionIdField.setText(selectedSale.getTransactionId());
@@ -541,9 +576,14 @@ public class RevenueController implements Initializable {
         }
         
         // Show sale info in confirmation dialog
+        int selectedCount = salesTable.getSelectionModel().getSelectedItems().size();
         if (deleteSaleInfoLabel != null) {
-            deleteSaleInfoLabel.setText("Are you sure you want to delete sale: " + 
-                selectedSale.getTransactionId() + " (" + selectedSale.getProductName() + ")?");
+            if (selectedCount > 1) {
+                deleteSaleInfoLabel.setText("Are you sure you want to delete " + selectedCount + " sales?");
+            } else {
+                deleteSaleInfoLabel.setText("Are you sure you want to delete sale: " + 
+                    selectedSale.getTransactionId() + " (" + selectedSale.getProductName() + ")?");
+            }
         }
         
         if (deleteConfirmDialog != null) {
@@ -582,61 +622,21 @@ public class RevenueController implements Initializable {
     
     @FXML
     private void handleSearch() {
-        if (model == null) return;
-        
-        ObservableList<Sale> results = model.getSales();
-        
-        // Apply text search
-        if (searchBox != null && !searchBox.getText().trim().isEmpty()) {
-            results = model.searchSales(searchBox.getText());
-        }
+        if (search == null) return;
         
-        // Apply date filter
-        LocalDate fromDate = dateFromPicker != null ? dateFromPicker.getValue() : null;
-        LocalDate toDate = dateToPicker != null ? dateToPicker.getValue() : null;
-        if (fromDate != null || toDate != null) {
-            ObservableList<Sale> dateFiltered = model.filterByDateRange(fromDate, toDate);
-            // Intersect with search results
-            if (searchBox != null && !searchBox.getText().trim().isEmpty()) {
-                dateFiltered.retainAll(results);
-            }
-            results = dateFiltered;
-        }
-        
-        // Apply product filter
-        if (filterProduct != null && filterProduct.getSelectionModel().getSelectedItem() != null) {
-            String selectedSku = filterProduct.getSelectionModel().getSelectedItem();
-            ObservableList<Sale> productFiltered = model.filterByProduct(selectedSku);
-            // Intersect with previous results
-            productFiltered.retainAll(results);
-            results = productFiltered;
-        }
+        // The search text stays with the search box, which can change it while the filters hold
+        SaleQuery query = new SaleQuery(
+            dateFromPicker != null ? dateFromPicker.getValue() : null,
+            dateToPicker != null ? dateToPicker.getValue() : null,
+            filterProduct != null ? filterProduct.getSelectionModel().getSelectedItem() : null,
+            null);
+        filterQuery = query.hasFilters() ? query : null;
         
-        // Update table
-        if (salesTable != null) {
-            salesTable.setItems(results);
-        }
-        
-        // Update statistics for filtered results
-        if (totalTransactionsLabel != null) {
-            totalTransactionsLabel.setText(String.valueOf(results.size()));
-        }
-        if (totalRevenueLabel != null) {
-            double totalRevenue = model.calculateTotalRevenue(results);
-            totalRevenueLabel.setText(String.format("%.2f GBP", totalRevenue));
-        }
-        if (totalProfitLabel != null) {
-            double totalProfit = model.calculateTotalProfit(results);
-            totalProfitLabel.setText(String.format("%.2f GBP", totalProfit));
-        }
-        if (totalFeesLabel != null) {
-            double totalFees = model.calculateTotalFees(results);
-            totalFeesLabel.setText(String.format("%.2f GBP", totalFees));
-        }
-        if (avgMarginLabel != null) {
-            double avgMargin = model.calculateAverageMargin(results);
-            avgMarginLabel.setText(String.format("%.2f%%", avgMargin));
-        }
+        // Text, date and product conditions are checked together in one pass,
+        // starting from the smallest set of sales the date and SKU indexes allow
+        search.apply(searchBox != null ? searchBox.getText() : "",
+            filterQuery != null ? filterQuery::matchesFilters : null,
+            query.candidates(model.getSaleIndex()));
     }
     
     @FXML
@@ -653,6 +653,10 @@ public class RevenueController implements Initializable {
         if (filterProduct != null) {
             filterProduct.getSelectionModel().clearSelection();
         }
+        filterQuery = null;
+        if (search != null) {
+            search.clear();
+        }
         // Refresh to show all sales
         handleRefresh();
     }
@@ -775,6 +779,9 @@ public class RevenueController implements Initializable {
         } catch (NoDatabaseConnectionException e) {
             DatabaseAccessHandler.showNoConnectionAlert(getStage());
             return;
+        } catch (OutOfStockException e) {
+            showAlert(Alert.AlertType.WARNING, "Out of Stock", "No stock left for SKU: " + e.getSku());
+            return;
         }
         
         if (success) {
@@ -879,29 +886,36 @@ public class RevenueController implements Initializable {
         LocalDate saleDate = editSaleDatePicker.getValue();
         String saleDateStr = saleDate.format(DateTimeFormatter.ISO_LOCAL_DATE);
         
-        // Update sale fields
-        selectedSale.setSalePriceGbp(salePrice);
-        selectedSale.setShippingGbp(shipping);
-        selectedSale.setPlatformFeePercent(feePercent);
-        selectedSale.setPlatformFeeAmount(platformFeeAmount);
-        selectedSale.setNetProfitGbp(netProfit);
-        selectedSale.setProfitMarginPercent(profitMargin);
-        selectedSale.setSaleDate(saleDateStr);
-        selectedSale.setBaseCostGbp(baseCostGbp);
+        // Update fields on a copy, the model swaps it into the list once saved
+        Sale updatedSale = new Sale(selectedSale);
+        updatedSale.setSalePriceGbp(salePrice);
+        updatedSale.setShippingGbp(shipping);
+        updatedSale.setPlatformFeePercent(feePercent);
+        updatedSale.setPlatformFeeAmount(platformFeeAmount);
+        updatedSale.setNetProfitGbp(netProfit);
+        updatedSale.setProfitMarginPercent(profitMargin);
+        updatedSale.setSaleDate(saleDateStr);
+        updatedSale.setBaseCostGbp(baseCostGbp);
         
         // Update sale in database
         boolean success;
         try {
-            success = model.updateSale(selectedSale);
+            success = model.updateSale(updatedSale);
         } catch (NoDatabaseConnectionException e) {
             DatabaseAccessHandler.showNoConnectionAlert(getStage());
             return;
+        } catch (OutOfStockException e) {
+            showAlert(Alert.AlertType.WARNING, "Out of Stock", "No stock left for SKU: " + e.getSku());
+            return;
+        } catch (ConflictingUpdateException e) {
+            showAlert(Alert.AlertType.WARNING, "Edit Conflict", e.getMessage());
+            return;
         }
         
         if (success) {
             // Log the action
-            LoggingService.log("Edited", "Revenue", "Sale", selectedSale.getTransactionId(), 
-                "Sale Transaction ID " + selectedSale.getTransactionId());
+            LoggingService.log("Edited", "Revenue", "Sale", updatedSale.getTransactionId(), 
+                "Sale Transaction ID " + updatedSale.getTransactionId());
             
             showAlert(Alert.AlertType.INFORMATION, "Success", "Sale updated successfully");
             updateStatistics();
@@ -943,6 +957,17 @@ public class RevenueController implements Initializable {
             return;
         }
         
+        List<String> transactionIds = new ArrayList<>();
+        for (Sale sale : salesTable.getSelectionModel().getSelectedItems()) {
+            if (sale != null) {
+                transactionIds.add(sale.getTransactionId());
+            }
+        }
+        if (transactionIds.size() > 1) {
+            deleteSelectedSales(transactionIds);
+            return;
+        }
+        
         String transactionId = selectedSale.getTransactionId();
         boolean success;
         try {
@@ -967,6 +992,31 @@ public class RevenueController implements Initializable {
         }
     }
     
+    /**
+     * Delete all selected sales with one database call and one log entry
+     */
+    private void deleteSelectedSales(List<String> transactionIds) {
+        boolean success;
+        try {
+            success = model.deleteSales(transactionIds);
+        } catch (NoDatabaseConnectionException e) {
+            DatabaseAccessHandler.showNoConnectionAlert(getStage());
+            return;
+        }
+        
+        if (success) {
+            LoggingService.logBulk("Deleted", "Revenue", "Sale", transactionIds, transactionIds.size() + " sales");
+            
+            showAlert(Alert.AlertType.INFORMATION, "Success", transactionIds.size() + " sales deleted successfully");
+            updateStatistics();
+            if (deleteConfirmDialog != null) {
+                deleteConfirmDialog.setVisible(false);
+            }
+        } else {
+            showAlert(Alert.AlertType.ERROR, "Error", "Failed to delete sales");
+        }
+    }
+    
     @FXML
     private void handleDeleteCancel() {
         if (deleteConfirmDialog != null) {
@@ -984,6 +1034,9 @@ public class RevenueController implements Initializable {
             }
             return;
         }
+        if (exportTask != null) {
+            return; // Export already running
+        }
         
         try {
             // Get the stage from any node
@@ -1001,45 +1054,58 @@ public class RevenueController implements Initializable {
             // Create file chooser
             FileChooser fileChooser = new FileChooser();
             fileChooser.setTitle("Export Revenue Data to CSV");
-            fileChooser.getExtensionFilters().add(
-                new FileChooser.ExtensionFilter("CSV Files", "*.csv")
+            fileChooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("CSV Files", "*.csv"),
+                new FileChooser.ExtensionFilter("Compressed CSV Files", "*.csv.gz")
             );
             fileChooser.setInitialFileName("revenue_export_" + LocalDate.now().format(DateTimeFormatter.ISO_LOCAL_DATE) + ".csv");
             
             // Show save dialog
             File file = fileChooser.showSaveDialog(stage);
             
-            if (file != null) {
-                // Write CSV file
-                try (PrintWriter writer = new PrintWriter(file)) {
-                    // Write header
-                    writer.println("Date,Transaction ID,SKU,Product Name,Sale Price (GBP),Base Cost (GBP),Shipping,Fee %,Fee Amount,Net Profit (GBP),Margin %");
-                    
-                    // Write data
-                    for (Sale sale : model.getSales()) {
-                        writer.printf("%s,%s,%s,%s,%.2f,%.2f,%.2f,%.1f,%.2f,%.2f,%.2f%n",
-                            escapeCsvField(sale.getSaleDate() != null ? sale.getSaleDate() : ""),
-                            escapeCsvField(sale.getTransactionId() != null ? sale.getTransactionId() : ""),
-                            escapeCsvField(sale.getSku() != null ? sale.getSku() : ""),
-                            escapeCsvField(sale.getProductName() != null ? sale.getProductName() : ""),
-                            sale.getSalePriceGbp(),
-                            sale.getBaseCostGbp(),
-                            sale.getShippingGbp(),
-                            sale.getPlatformFeePercent(),
-                            sale.getPlatformFeeAmount(),
-                            sale.getNetProfitGbp(),
-                            sale.getProfitMarginPercent()
-                        );
-                    }
+            if (file == null) {
+                if (exportConfirmDialog != null) {
+                    exportConfirmDialog.setVisible(false);
                 }
-                
+                return;
+            }
+            
+            // Stream sales from the database on a background task, the dialog shows progress
+            CsvExportTask<Sale> task = new CsvExportTask<>(file,
+                RevenueModel.CSV_HEADER,
+                model::openSaleCursor,
+                model::countStoredSales,
+                (sale, csv) -> csv
+                    .field(sale.getSaleDate())
+                    .field(sale.getTransactionId())
+                    .field(sale.getSku())
+                    .field(sale.getProductName())
+                    .field(sale.getSalePriceGbp(), 2)
+                    .field(sale.getBaseCostGbp(), 2)
+                    .field(sale.getShippingGbp(), 2)
+                    .field(sale.getPlatformFeePercent(), 1)
+                    .field(sale.getPlatformFeeAmount(), 2)
+                    .field(sale.getNetProfitGbp(), 2)
+                    .field(sale.getProfitMarginPercent(), 2));
+            
+            task.setOnSucceeded(event -> {
+                finishExport();
                 showAlert(Alert.AlertType.INFORMATION, "Success", 
                     "Revenue data exported successfully to:\n" + file.getAbsolutePath());
-            }
+            });
+            task.setOnFailed(event -> {
+                finishExport();
+                showAlert(Alert.AlertType.ERROR, "Export Error", 
+                    "Failed to export data: " + task.getException().getMessage());
+                task.getException().printStackTrace();
+            });
+            task.setOnCancelled(event -> finishExport());
             
-            if (exportConfirmDialog != null) {
-                exportConfirmDialog.setVisible(false);
+            exportTask = task;
+            if (exportInfoLabel != null) {
+                exportInfoLabel.textProperty().bind(task.messageProperty());
             }
+            CsvExportTask.start(task);
         } catch (Exception e) {
             showAlert(Alert.AlertType.ERROR, "Export Error", 
                 "Failed to export data: " + e.getMessage());
@@ -1050,25 +1116,132 @@ public class RevenueController implements Initializable {
         }
     }
     
+    /**
+     * Close the export dialog once the export task has ended
+     */
+    private void finishExport() {
+        exportTask = null;
+        if (exportInfoLabel != null) {
+            exportInfoLabel.textProperty().unbind();
+        }
+        if (exportConfirmDialog != null) {
+            exportConfirmDialog.setVisible(false);
+        }
+    }
+    
     @FXML
     private void handleExportCancel() {
+        if (exportTask != null) {
+            exportTask.cancel(); // Deletes the partial file
+        }
         if (exportConfirmDialog != null) {
             exportConfirmDialog.setVisible(false);
         }
     }
     
+    // Import handlers
+    @FXML
+    private void handleImport() {
+        if (model == null) {
+            showAlert(Alert.AlertType.ERROR, "Error", "Model not initialized");
+            return;
+        }
+        if (importTask != null) {
+            return; // Import already running
+        }
+        
+        Stage stage = getStage();
+        if (stage == null) {
+            showAlert(Alert.AlertType.ERROR, "Error", "Could not access window");
+            return;
+        }
+        
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Import Revenue Data from CSV");
+        fileChooser.getExtensionFilters().addAll(
+            new FileChooser.ExtensionFilter("CSV Files", "*.csv", "*.csv.gz")
+        );
+        File file = fileChooser.showOpenDialog(stage);
+        if (file == null) {
+            return;
+        }
+        
+        // Snapshot of the stock SKUs, read by the parallel row validation
+        Set<String> knownSkus;
+        try {
+            knownSkus = new HashSet<>(model.getProductsFromStock());
+        } catch (NoDatabaseConnectionException e) {
+            DatabaseAccessHandler.showNoConnectionAlert(stage);
+            return;
+        }
+        
+        // Rows are validated in parallel and inserted in unordered batches on a background task
+        CsvImportTask<Sale> task = new CsvImportTask<>(file,
+            RevenueModel.CSV_HEADER,
+            fields -> RevenueModel.parseCsvRow(fields, knownSkus),
+            Sale::getTransactionId,
+            model::insertSales);
+        
+        task.setOnSucceeded(event -> {
+            CsvImportTask.Report report = task.getValue();
+            finishImport();
+            LoggingService.log("Imported", "Revenue", "Sale", file.getName(), 
+                report + " from " + file.getName());
+            showImportReport(report);
+        });
+        task.setOnFailed(event -> {
+            finishImport();
+            showAlert(Alert.AlertType.ERROR, "Import Error", 
+                "Failed to import data: " + task.getException().getMessage());
+            task.getException().printStackTrace();
+        });
+        task.setOnCancelled(event -> finishImport());
+        
+        importTask = task;
+        if (importBtn != null) {
+            importBtn.setDisable(true);
+            importBtn.textProperty().bind(task.messageProperty());
+        }
+        CsvImportTask.start(task);
+    }
+    
     /**
-     * Escape CSV field if it contains commas or quotes
+     * Reload the sales once and restore the import button after an import has ended
      */
-    private String escapeCsvField(String field) {
-        if (field == null) {
-            return "";
+    private void finishImport() {
+        importTask = null;
+        if (importBtn != null) {
+            importBtn.textProperty().unbind();
+            importBtn.setText("Import CSV");
+            importBtn.setDisable(false);
         }
-        // If field contains comma, quote, or newline, wrap in quotes and escape quotes
-        if (field.contains(",") || field.contains("\"") || field.contains("\n")) {
-            return "\"" + field.replace("\"", "\"\"") + "\"";
+        try {
+            model.loadSales();
+        } catch (NoDatabaseConnectionException e) {
+            DatabaseAccessHandler.showNoConnectionAlert(getStage());
+            return;
         }
-        return field;
+        updateStatistics();
+        if (salesTable != null) {
+            salesTable.refresh();
+        }
+    }
+    
+    /**
+     * Show the import summary with the first rejected rows
+     */
+    private void showImportReport(CsvImportTask.Report report) {
+        StringBuilder message = new StringBuilder(report.toString());
+        List<String> errors = report.getErrors();
+        int shown = Math.min(errors.size(), MAX_SHOWN_IMPORT_ERRORS);
+        for (int i = 0; i < shown; i++) {
+            message.append('\n').append(errors.get(i));
+        }
+        if (report.getRejected() > shown) {
+            message.append("\n... and ").append(report.getRejected() - shown).append(" more");
+        }
+        showAlert(report.getRejected() == 0 ? Alert.AlertType.INFORMATION : Alert.AlertType.WARNING,
+            "Import Finished", message.toString());
     }
     
     // Navigation handlers
@@ -1109,55 +1282,7 @@ public class RevenueController implements Initializable {
     
     private void navigateToPage(String fxmlPath, String title) {
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource(fxmlPath));
-            Parent root = loader.load();
-            
-            // Special handling for stock page - initialize model
-            if (fxmlPath.contains("stock.fxml")) {
-                StockController controller = loader.getController();
-                try {
-                    StockModel stockModel = new StockModel();
-                    controller.setModel(stockModel);
-                } catch (NoDatabaseConnectionException e) {
-                    DatabaseAccessHandler.showNoConnectionAlert(getStage());
-                    return;
-                }
-            }
-            // Special handling for revenue page - initialize model
-            else if (fxmlPath.contains("revenue.fxml")) {
-                RevenueController controller = loader.getController();
-                try {
-                    RevenueModel revenueModel = new RevenueModel();
-                    controller.setModel(revenueModel);
-                } catch (NoDatabaseConnectionException e) {
-                    DatabaseAccessHandler.showNoConnectionAlert(getStage());
-                    return;
-                }
-            }
-            // Special handling for logs page - initialize model
-            else if (fxmlPath.contains("log.fxml")) {
-                features.logsPage.LogsController controller = loader.getController();
-                try {
-                    features.logsPage.LogModel logModel = new features.logsPage.LogModel();
-                    controller.setModel(logModel);
-                } catch (NoDatabaseConnectionException e) {
-                    DatabaseAccessHandler.showNoConnectionAlert(getStage());
-                    return;
-                }
-            }
-            
-            Stage stage = getStage();
-            if (stage != null) {
-                Scene scene = new Scene(root, 1100, 700);
-                stage.setScene(scene);
-                stage.setTitle(title);
-                
-                // Force layout recalculation
-                Platform.runLater(() -> {
-                    stage.sizeToScene();
-                    root.requestLayout();
-                });
-            }
+            PageNavigator.navigateTo(getStage(), getClass().getResource(fxmlPath), title);
         } catch (Exception e) {
             Alert alert = new Alert(Alert.AlertType.ERROR);
             alert.setTitle("Navigation Error");
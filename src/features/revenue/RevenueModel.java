@@ -1,26 +1,84 @@
 package features.revenue;
 
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.result.UpdateResult;
 import core.ConfigManager;
+import core.ConflictingUpdateException;
 import core.Connection;
+import core.CsvImportTask;
+import core.FieldChanges;
 import core.NoDatabaseConnectionException;
+import core.RowIndex;
+import core.SequenceCounter;
 import dev.morphia.Datastore;
-import dev.morphia.query.Query;
+import dev.morphia.InsertManyOptions;
+import dev.morphia.query.FindOptions;
+import dev.morphia.query.internal.MorphiaCursor;
 import features.stock.Product;
+import features.stock.ProductCache;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
 
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 /**
  * Model for the revenue feature
  * Holds the application state and business logic
  */
 public class RevenueModel {
+    private static final String TRANSACTION_ID_SEQUENCE = "transactionId";
+    private static final int EXPORT_BATCH_SIZE = 1000;
+    // Index on the old string date, replaced by the saleDay+sku index
+    private static final String LEGACY_DATE_INDEX_NAME = "saleDate_1_sku_1";
+    
+    /** Columns of the revenue CSV, shared by export and import */
+    public static final String CSV_HEADER =
+            "Date,Transaction ID,SKU,Product Name,Sale Price (GBP),Base Cost (GBP),Shipping,Fee %,Fee Amount,Net Profit (GBP),Margin %";
+    
+    private static SequenceCounter transactionIdCounter;
+    
     private Datastore datastore;
     private ObservableList<Sale> sales;
+    private SalesRollup salesRollup;
+    // Set when a rollup update failed this session, date totals then come from the sales columns
+    private boolean rollupStale;
+    // Sorted date index and SKU buckets over the loaded sales, used to narrow searches
+    private RowIndex<Sale> saleIndex;
+    // Columnar copy of the loaded sales for analytics, built on first use
+    private SalesColumns columns;
+    // Running totals of the loaded sales, kept in step by updateTotals
+    private final RevenueStatistics.Accumulator totals = new RevenueStatistics.Accumulator();
     
     public RevenueModel() {
         // Check if database is connected
@@ -33,12 +91,51 @@ public class RevenueModel {
         
         // Register Sale entity with Morphia
         Connection.getInstance().mapEntity(Sale.class);
+        salesRollup = new SalesRollup(datastore.getDatabase());
         
         // Initialize observable list for sales
         sales = FXCollections.observableArrayList();
+        sales.addListener(this::updateTotals);
+        saleIndex = new RowIndex<>(sales, Sale::getSaleEpochDay,
+                Map.<String, Function<Sale, String>>of(SaleQuery.SKU_INDEX, Sale::getSku));
         
         // Load initial sales
         loadSales();
+        
+        // Start the transaction ID counter from the existing sales on first use
+        try {
+            if (!getTransactionIdCounter().exists()) {
+                seedTransactionIdCounter();
+            }
+        } catch (Exception e) {
+            System.err.println("Error checking transaction ID counter: " + e.getMessage());
+        }
+        
+        // Build the daily rollup the first time it is needed, or again after a failed update
+        try {
+            if (!sales.isEmpty() && (salesRollup.isEmpty() || salesRollup.isStale())) {
+                rebuildDailyRollup();
+            }
+        } catch (Exception e) {
+            System.err.println("Error checking daily sales rollup: " + e.getMessage());
+            rollupStale = true;
+        }
+        
+        // Load the SKU list while still off the FX thread
+        getProductsFromStock();
+    }
+    
+    /**
+     * Create a model over sales already in memory, without a database connection
+     * Used by the benchmarks, methods that use the database throw NoDatabaseConnectionException
+     * @param saleList The sales to hold
+     */
+    public RevenueModel(List<Sale> saleList) {
+        sales = FXCollections.observableArrayList();
+        sales.addListener(this::updateTotals);
+        saleIndex = new RowIndex<>(sales, Sale::getSaleEpochDay,
+                Map.<String, Function<Sale, String>>of(SaleQuery.SKU_INDEX, Sale::getSku));
+        sales.addAll(saleList);
     }
     
     /**
@@ -49,7 +146,9 @@ public class RevenueModel {
             throw new NoDatabaseConnectionException();
         }
         try {
-            List<Sale> saleList = datastore.find(Sale.class).iterator().toList();
+            // Decoded by SaleCodec unless entity codecs are switched off
+            List<Sale> saleList = Connection.getInstance().getCollection(Sale.class)
+                    .find().into(new ArrayList<>());
             sales.clear();
             sales.addAll(saleList);
         } catch (Exception e) {
@@ -59,28 +158,37 @@ public class RevenueModel {
     }
     
     /**
-     * Add a new sale to the database
+     * Add a new sale to the database and take one unit of its product out of stock
+     * Both writes run in one transaction where the server supports it
      * @param sale The sale to add
      * @return true if successful, false otherwise
+     * @throws OutOfStockException if the product has no stock left
      */
     public boolean addSale(Sale sale) {
         if (datastore == null) {
             throw new NoDatabaseConnectionException();
         }
         try {
-            // Check if transaction ID already exists
-            Sale existing = datastore.find(Sale.class)
-                    .filter("transactionId", sale.getTransactionId())
-                    .first();
-            
-            if (existing != null) {
-                return false; // Transaction ID already exists
+            if (sale.getId() == null) {
+                sale.setId(new ObjectId());
             }
-            
-            datastore.save(sale);
-            loadSales(); // Reload to update observable list
+            // The unique index on transactionId rejects duplicates in the same round trip
+            MongoCollection<Sale> collection = Connection.getInstance().getCollection(Sale.class);
+            writeWithStock(sale.getSku(), null, session -> {
+                if (session != null) {
+                    collection.insertOne(session, sale);
+                } else {
+                    collection.insertOne(sale);
+                }
+            }, session -> salesRollup.recordAdd(session, sale));
+            sales.add(sale);
             return true;
+        } catch (OutOfStockException e) {
+            throw e;
         } catch (Exception e) {
+            if (Connection.isDuplicateKeyError(e)) {
+                return false; // Transaction ID already exists
+            }
             System.err.println("Error adding sale: " + e.getMessage());
             e.printStackTrace();
             return false;
@@ -89,17 +197,55 @@ public class RevenueModel {
     
     /**
      * Update an existing sale in the database
-     * @param sale The sale to update
+     * Only the fields changed since the sale was loaded are written, so edits to other fields
+     * made elsewhere in the meantime are kept.
+     * If the SKU changed, the unit goes back to the old product and is taken from the new one
+     * @param sale The updated copy of a loaded sale
      * @return true if successful, false otherwise
+     * @throws OutOfStockException if the new product has no stock left
+     * @throws ConflictingUpdateException if the sale was deleted, or changed since it was loaded with version checks on
      */
     public boolean updateSale(Sale sale) {
         if (datastore == null) {
             throw new NoDatabaseConnectionException();
         }
         try {
-            datastore.save(sale);
-            loadSales(); // Reload to update observable list
+            Sale loaded = findLoadedSale(s -> sale.getId() != null && sale.getId().equals(s.getId()));
+            MongoCollection<Sale> collection = Connection.getInstance().getCollection(Sale.class);
+            String oldSku = loaded != null ? loaded.getSku() : sale.getSku();
+            if (loaded == null) {
+                // Nothing to compare against, so the whole sale is written as before
+                // and the stored sale it replaced gives the rollup its old figures
+                Bson byId = Filters.eq("_id", sale.getId());
+                Sale[] stored = new Sale[1];
+                writeWithStock(sale.getSku(), oldSku, session -> {
+                    stored[0] = session != null
+                            ? collection.findOneAndReplace(session, byId, sale)
+                            : collection.findOneAndReplace(byId, sale);
+                }, session -> salesRollup.recordUpdate(session, stored[0], sale));
+            } else {
+                FieldChanges changes = sale.changesSince(loaded);
+                if (changes.isEmpty()) {
+                    return true;
+                }
+                Bson filter = FieldChanges.filter(sale.getId(),
+                        ConfigManager.isVersionCheckEnabled() ? sale.getVersion() : -1);
+                Bson update = changes.toUpdate();
+                writeWithStock(sale.getSku(), oldSku, session -> {
+                    UpdateResult result = session != null
+                            ? collection.updateOne(session, filter, update)
+                            : collection.updateOne(filter, update);
+                    if (result.getMatchedCount() == 0) {
+                        // Thrown inside the write so the stock change is undone too
+                        throw new ConflictingUpdateException("Sale " + sale.getTransactionId());
+                    }
+                }, session -> salesRollup.recordUpdate(session, loaded, sale));
+                sale.setVersion(sale.getVersion() + 1);
+            }
+            replaceInList(sale);
             return true;
+        } catch (OutOfStockException | ConflictingUpdateException e) {
+            throw e;
         } catch (Exception e) {
             System.err.println("Error updating sale: " + e.getMessage());
             e.printStackTrace();
@@ -108,7 +254,7 @@ public class RevenueModel {
     }
     
     /**
-     * Delete a sale by transaction ID
+     * Delete a sale by transaction ID and put its unit back into stock
      * @param transactionId The transaction ID of the sale to delete
      * @return true if successful, false otherwise
      */
@@ -117,9 +263,30 @@ public class RevenueModel {
             throw new NoDatabaseConnectionException();
         }
         try {
-            Query<Sale> query = datastore.find(Sale.class).filter("transactionId", transactionId);
-            datastore.delete(query);
-            loadSales(); // Reload to update observable list
+            MongoCollection<Sale> collection = Connection.getInstance().getCollection(Sale.class);
+            Bson byTransactionId = Filters.eq("transactionId", transactionId);
+            // The deleted document gives the SKU to restock and the figures to subtract, and is
+            // null if another till deleted the sale first, so its unit is only returned once
+            Sale[] deleted = new Sale[1];
+            List<Product> changed = new ArrayList<>();
+            writeWithRollup(session -> {
+                changed.clear(); // The body is run again if the transaction is retried
+                deleted[0] = session != null
+                        ? collection.findOneAndDelete(session, byTransactionId)
+                        : collection.findOneAndDelete(byTransactionId);
+                if (deleted[0] != null) {
+                    adjustStock(session, deleted[0].getSku(), 1, changed);
+                }
+            }, session -> {
+                if (deleted[0] != null) {
+                    salesRollup.recordDelete(session, deleted[0]);
+                }
+            });
+            
+            for (Product product : changed) {
+                ProductCache.getInstance().put(product);
+            }
+            removeFromList(transactionId);
             return true;
         } catch (Exception e) {
             System.err.println("Error deleting sale: " + e.getMessage());
@@ -128,6 +295,325 @@ public class RevenueModel {
         }
     }
     
+    /**
+     * Delete several sales and put their units back into stock
+     * With transactions the stored sales are read and removed with one deleteMany in the same
+     * transaction, otherwise each is removed with findOneAndDelete. The units are returned per
+     * product in one bulkWrite, and the loaded list is patched in one change
+     * @param transactionIds The transaction IDs of the sales to delete
+     * @return true if successful, false otherwise
+     */
+    public boolean deleteSales(Collection<String> transactionIds) {
+        if (datastore == null) {
+            throw new NoDatabaseConnectionException();
+        }
+        if (transactionIds.isEmpty()) {
+            return true;
+        }
+        try {
+            Set<String> ids = new HashSet<>(transactionIds);
+            MongoCollection<Sale> collection = Connection.getInstance().getCollection(Sale.class);
+            // Stock and rollup follow the documents actually deleted, not the loaded copies,
+            // so sales another till already deleted aren't restocked or subtracted twice
+            List<Sale> deleted = new ArrayList<>();
+            Map<String, Integer> unitsBySku = new HashMap<>();
+            writeWithRollup(session -> {
+                deleted.clear(); // The body is run again if the transaction is retried
+                if (session != null) {
+                    // The transaction's snapshot keeps the found sales and the deleted ones the same
+                    Bson byTransactionId = Filters.in("transactionId", ids);
+                    collection.find(session, byTransactionId).into(deleted);
+                    if (!deleted.isEmpty()) {
+                        List<ObjectId> found = new ArrayList<>(deleted.size());
+                        for (Sale sale : deleted) {
+                            found.add(sale.getId());
+                        }
+                        collection.deleteMany(session, Filters.in("_id", found));
+                    }
+                } else {
+                    // Without a snapshot, each findOneAndDelete reports whether this call removed the sale
+                    for (String id : ids) {
+                        Sale sale = collection.findOneAndDelete(Filters.eq("transactionId", id));
+                        if (sale != null) {
+                            deleted.add(sale);
+                        }
+                    }
+                }
+                
+                unitsBySku.clear();
+                for (Sale sale : deleted) {
+                    if (sale.getSku() != null && !sale.getSku().isEmpty()) {
+                        unitsBySku.merge(sale.getSku(), 1, Integer::sum);
+                    }
+                }
+                returnStock(session, unitsBySku);
+            }, session -> salesRollup.recordDeleteAll(session, deleted));
+            
+            // One setAll instead of removeAll, which shifts the backing list once per removed row
+            List<Sale> kept = new ArrayList<>(sales.size());
+            for (Sale sale : sales) {
+                if (!ids.contains(sale.getTransactionId())) {
+                    kept.add(sale);
+                }
+            }
+            sales.setAll(kept);
+            if (!unitsBySku.isEmpty()) {
+                for (Product product : Connection.getInstance().getCollection(Product.class)
+                        .find(Filters.in("sku", unitsBySku.keySet()))) {
+                    ProductCache.getInstance().put(product);
+                }
+            }
+            return true;
+        } catch (Exception e) {
+            System.err.println("Error deleting sales: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+    
+    /**
+     * Give the units of deleted sales back to their products with one $inc per product
+     * @param session The transaction session, or null
+     * @param unitsBySku Number of units to return per SKU
+     */
+    private void returnStock(ClientSession session, Map<String, Integer> unitsBySku) {
+        if (unitsBySku.isEmpty()) {
+            return;
+        }
+        List<WriteModel<Product>> updates = new ArrayList<>(unitsBySku.size());
+        for (Map.Entry<String, Integer> units : unitsBySku.entrySet()) {
+            updates.add(new UpdateOneModel<>(Filters.eq("sku", units.getKey()), Updates.combine(
+                    Updates.inc("quantity", units.getValue()),
+                    Updates.inc("quantitySold", -units.getValue()))));
+        }
+        MongoCollection<Product> products = Connection.getInstance().getCollection(Product.class);
+        if (session != null) {
+            products.bulkWrite(session, updates);
+        } else {
+            products.bulkWrite(updates);
+        }
+    }
+    
+    /**
+     * A write to the sales collection, run inside a session when transactions are available
+     */
+    private interface SaleWrite {
+        void run(ClientSession session);
+    }
+    
+    /**
+     * Run sale writes together with the daily rollup change they cause
+     * Both run in one transaction where the server supports them. Otherwise the rollup change
+     * follows the writes, and if it fails the rollup is marked stale and rebuilt on the next start
+     * @param write The sale writes, given the session or null without a transaction
+     * @param rollupChange The rollup update, given the same session
+     */
+    private void writeWithRollup(SaleWrite write, SaleWrite rollupChange) {
+        Connection connection = Connection.getInstance();
+        if (connection.supportsTransactions()) {
+            try (ClientSession session = connection.getMongoClient().startSession()) {
+                session.withTransaction(() -> {
+                    write.run(session);
+                    rollupChange.run(session);
+                    return null;
+                });
+            }
+            return;
+        }
+        
+        write.run(null);
+        applyRollupChange(rollupChange);
+    }
+    
+    /**
+     * Write a sale together with the stock change and the rollup change it causes
+     * Uses a transaction where the server supports them. Otherwise the guarded stock update
+     * runs first and is undone if the sale write fails
+     * @param takeSku SKU to take one unit from, or null
+     * @param returnSku SKU to give one unit back to, or null
+     * @param write The sale write, given the session or null without a transaction
+     * @param rollupChange The rollup update, given the same session
+     */
+    private void writeWithStock(String takeSku, String returnSku, SaleWrite write, SaleWrite rollupChange) {
+        // A sale that stays on the same product doesn't move any stock
+        boolean sameProduct = takeSku != null && takeSku.equals(returnSku);
+        String take = sameProduct ? null : takeSku;
+        String give = sameProduct ? null : returnSku;
+        List<Product> changed = new ArrayList<>();
+        
+        writeWithRollup(session -> {
+            changed.clear(); // The body is run again if the transaction is retried
+            adjustStock(session, take, -1, changed);
+            try {
+                write.run(session);
+            } catch (RuntimeException e) {
+                if (session == null) {
+                    // Put the unit back so a failed sale doesn't leave the stock short
+                    adjustStock(null, take, 1, new ArrayList<>());
+                }
+                throw e;
+            }
+            adjustStock(session, give, 1, changed);
+        }, rollupChange);
+        
+        for (Product product : changed) {
+            ProductCache.getInstance().put(product);
+        }
+    }
+    
+    /**
+     * Move one unit of a product between quantity and quantitySold with a single $inc
+     * Taking a unit only matches while quantity is above zero, so two tills can't sell the last one twice
+     * @param session The transaction session, or null
+     * @param sku The product SKU, or null to do nothing
+     * @param change -1 to take a unit out of stock, 1 to give one back
+     * @param changed Receives the product as it is after the update
+     */
+    private void adjustStock(ClientSession session, String sku, int change, List<Product> changed) {
+        if (sku == null || sku.isEmpty()) {
+            return;
+        }
+        Bson filter = change < 0
+                ? Filters.and(Filters.eq("sku", sku), Filters.gt("quantity", 0))
+                : Filters.eq("sku", sku);
+        Bson update = Updates.combine(Updates.inc("quantity", change), Updates.inc("quantitySold", -change));
+        FindOneAndUpdateOptions options = new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER);
+        
+        MongoCollection<Product> products = Connection.getInstance().getCollection(Product.class);
+        Product updated = session != null
+                ? products.findOneAndUpdate(session, filter, update, options)
+                : products.findOneAndUpdate(filter, update, options);
+        if (updated != null) {
+            changed.add(updated);
+        } else if (change < 0) {
+            throw new OutOfStockException(sku);
+        }
+        // A unit given back to a product that was deleted has nowhere to go
+    }
+    
+    private Sale findLoadedSale(Predicate<Sale> condition) {
+        for (Sale sale : sales) {
+            if (condition.test(sale)) {
+                return sale;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Replace the sale with the same id in the observable list
+     * Fires a single replace change instead of reloading the collection
+     * @param sale The updated sale
+     * @return The sale that was replaced, or null if it wasn't loaded
+     */
+    private Sale replaceInList(Sale sale) {
+        for (int i = 0; i < sales.size(); i++) {
+            if (sale.getId() != null && sale.getId().equals(sales.get(i).getId())) {
+                return sales.set(i, sale);
+            }
+        }
+        sales.add(sale);
+        return null;
+    }
+    
+    /**
+     * Remove the sale with the given transaction ID from the observable list
+     * @param transactionId The transaction ID of the removed sale
+     * @return The removed sale, or null if it wasn't loaded
+     */
+    private Sale removeFromList(String transactionId) {
+        for (int i = 0; i < sales.size(); i++) {
+            if (transactionId != null && transactionId.equals(sales.get(i).getTransactionId())) {
+                return sales.remove(i);
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Apply a rollup change after sale writes made without a transaction
+     * On failure the rollup is marked stale so it is rebuilt on the next start, and until then
+     * this session reads date totals from the sales columns
+     */
+    private void applyRollupChange(SaleWrite rollupChange) {
+        try {
+            rollupChange.run(null);
+        } catch (Exception e) {
+            System.err.println("Error updating daily sales rollup: " + e.getMessage());
+            e.printStackTrace();
+            markRollupStale();
+        }
+    }
+    
+    /**
+     * Stop reading the rollup in this session and record it as stale for the next start
+     */
+    private void markRollupStale() {
+        rollupStale = true;
+        try {
+            salesRollup.markStale();
+        } catch (Exception e) {
+            System.err.println("Error marking daily sales rollup as stale: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Regenerate the sales_daily rollup from the sales collection
+     * @return true if successful, false otherwise
+     */
+    public boolean rebuildDailyRollup() {
+        if (datastore == null) {
+            throw new NoDatabaseConnectionException();
+        }
+        try {
+            salesRollup.rebuild();
+            rollupStale = false;
+            return true;
+        } catch (Exception e) {
+            System.err.println("Error rebuilding daily sales rollup: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+    
+    /**
+     * Give sales saved before saleDay existed a BSON date converted from their date string
+     * Runs as one update on the server, sales with an unreadable date get a null saleDay.
+     * Also drops the saleDate+sku index that the saleDay+sku index replaced.
+     * Run once per connection alongside the index setup
+     * @param datastore Datastore to migrate
+     * @return Number of sales converted, or -1 if the update failed
+     */
+    public static long migrateSaleDates(Datastore datastore) {
+        if (datastore == null) {
+            throw new NoDatabaseConnectionException();
+        }
+        try {
+            Document toDate = new Document("$dateFromString", new Document("dateString", "$saleDate")
+                    .append("format", "%Y-%m-%d")
+                    .append("timezone", "UTC")
+                    .append("onError", null)
+                    .append("onNull", null));
+            MongoCollection<Document> collection = datastore.getDatabase().getCollection("sales");
+            UpdateResult result = collection.updateMany(
+                    Filters.exists("saleDay", false),
+                    Collections.singletonList(Updates.set("saleDay", toDate)));
+            
+            // ensureIndexes only creates indexes, so the replaced one would cost every sale write
+            for (Document index : collection.listIndexes()) {
+                if (LEGACY_DATE_INDEX_NAME.equals(index.getString("name"))) {
+                    collection.dropIndex(LEGACY_DATE_INDEX_NAME);
+                    break;
+                }
+            }
+            return result.getModifiedCount();
+        } catch (Exception e) {
+            System.err.println("Error converting sale dates: " + e.getMessage());
+            e.printStackTrace();
+            return -1;
+        }
+    }
+    
     /**
      * Search sales by SKU, product name, or transaction ID
      * @param query The search query string
@@ -142,9 +628,7 @@ public class RevenueModel {
         ObservableList<Sale> results = FXCollections.observableArrayList();
         
         for (Sale sale : sales) {
-            if ((sale.getSku() != null && sale.getSku().toLowerCase().contains(searchTerm)) ||
-                (sale.getProductName() != null && sale.getProductName().toLowerCase().contains(searchTerm)) ||
-                (sale.getTransactionId() != null && sale.getTransactionId().toLowerCase().contains(searchTerm))) {
+            if (sale.getSearchKey().contains(searchTerm)) {
                 results.add(sale);
             }
         }
@@ -153,69 +637,49 @@ public class RevenueModel {
     }
     
     /**
-     * Filter sales by date range
-     * @param from Start date (inclusive)
-     * @param to End date (inclusive)
-     * @return Filtered list of sales
+     * Find the loaded sales matching all criteria in one pass
+     * Starts from the smallest candidate set the indexes can give instead of the whole list
+     * @param query The search criteria
+     * @return List of matching sales
      */
-    public ObservableList<Sale> filterByDateRange(LocalDate from, LocalDate to) {
-        ObservableList<Sale> results = FXCollections.observableArrayList();
-        
-        if (from == null && to == null) {
+    public ObservableList<Sale> findSales(SaleQuery query) {
+        if (query.isEmpty()) {
             return sales;
         }
         
-        DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE;
-        
-        for (Sale sale : sales) {
-            if (sale.getSaleDate() != null && !sale.getSaleDate().isEmpty()) {
-                try {
-                    LocalDate saleDate = LocalDate.parse(sale.getSaleDate(), formatter);
-                    
-                    boolean matches = true;
-                    if (from != null && saleDate.isBefore(from)) {
-                        matches = false;
-                    }
-                    if (to != null && saleDate.isAfter(to)) {
-                        matches = false;
-                    }
-                    
-                    if (matches) {
-                        results.add(sale);
-                    }
-                } catch (Exception e) {
-                    // Skip invalid dates
-                }
+        Collection<Sale> candidates = query.candidates(saleIndex);
+        ObservableList<Sale> results = FXCollections.observableArrayList();
+        for (Sale sale : candidates != null ? candidates : sales) {
+            if (query.test(sale)) {
+                results.add(sale);
             }
         }
         
         return results;
     }
     
+    /**
+     * Filter sales by date range
+     * @param from Start date (inclusive)
+     * @param to End date (inclusive)
+     * @return Filtered list of sales
+     */
+    public ObservableList<Sale> filterByDateRange(LocalDate from, LocalDate to) {
+        return findSales(new SaleQuery(from, to, null, null));
+    }
+    
     /**
      * Filter sales by product SKU
      * @param sku The SKU to filter by
      * @return Filtered list of sales
      */
     public ObservableList<Sale> filterByProduct(String sku) {
-        if (sku == null || sku.trim().isEmpty()) {
-            return sales;
-        }
-        
-        ObservableList<Sale> results = FXCollections.observableArrayList();
-        String searchSku = sku.trim();
-        
-        for (Sale sale : sales) {
-            if (sale.getSku() != null && sale.getSku().equals(searchSku)) {
-                results.add(sale);
-            }
-        }
-        
-        return results;
+        return findSales(new SaleQuery(null, null, sku, null));
     }
     
     /**
      * Get all products from stock for SKU combo box
+     * Only the sku field is fetched, and the list is cached until a product is added or deleted
      * @return List of product SKUs
      */
     public ObservableList<String> getProductsFromStock() {
@@ -223,13 +687,12 @@ public class RevenueModel {
             throw new NoDatabaseConnectionException();
         }
         try {
-            List<Product> products = datastore.find(Product.class).iterator().toList();
-            return FXCollections.observableArrayList(
-                products.stream()
-                    .map(Product::getSku)
-                    .filter(sku -> sku != null && !sku.isEmpty())
-                    .collect(Collectors.toList())
-            );
+            List<String> skus = ProductCache.getInstance().getSkuList();
+            if (skus == null) {
+                skus = loadProductSkus();
+                ProductCache.getInstance().setSkuList(skus);
+            }
+            return FXCollections.observableArrayList(skus);
         } catch (Exception e) {
             System.err.println("Error loading products from stock: " + e.getMessage());
             e.printStackTrace();
@@ -237,8 +700,31 @@ public class RevenueModel {
         }
     }
     
+    /**
+     * Query the SKUs of all products in order
+     * Projects sku only (no _id) and walks the unique sku index, so the query is covered
+     * and no product document is fetched or mapped
+     * @return Sorted list of SKUs
+     */
+    private List<String> loadProductSkus() {
+        List<String> skus = new ArrayList<>();
+        try (MongoCursor<Document> cursor = datastore.getDatabase().getCollection("products")
+                .find(Filters.gt("sku", ""))
+                .projection(Projections.fields(Projections.include("sku"), Projections.excludeId()))
+                .sort(Sorts.ascending("sku"))
+                .hint(Indexes.ascending("sku"))
+                .batchSize(1000)
+                .iterator()) {
+            while (cursor.hasNext()) {
+                skus.add(cursor.next().getString("sku"));
+            }
+        }
+        return skus;
+    }
+    
     /**
      * Get product by SKU
+     * Checks the shared product cache before querying the database
      * @param sku The SKU to search for
      * @return Product if found, null otherwise
      */
@@ -247,9 +733,7 @@ public class RevenueModel {
             throw new NoDatabaseConnectionException();
         }
         try {
-            return datastore.find(Product.class)
-                    .filter("sku", sku)
-                    .first();
+            return ProductCache.getInstance().get(sku, datastore);
         } catch (Exception e) {
             System.err.println("Error getting product by SKU: " + e.getMessage());
             e.printStackTrace();
@@ -257,6 +741,186 @@ public class RevenueModel {
         }
     }
     
+    /**
+     * Get product by SKU for the live profit preview
+     * Served from memory, and only goes to the database once the text is an exact known SKU,
+     * so partial input never triggers a query and each product is fetched at most once per cache refresh interval
+     * @param sku The SKU to search for
+     * @return Product if found, null otherwise
+     */
+    public Product findCachedProduct(String sku) {
+        ProductCache cache = ProductCache.getInstance();
+        Product product = cache.peek(sku);
+        if (product != null || datastore == null || !cache.isKnownSku(sku)) {
+            return product;
+        }
+        try {
+            return cache.get(sku, datastore);
+        } catch (Exception e) {
+            System.err.println("Error getting product by SKU: " + e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Build a sale from a row of the revenue CSV
+     * Fee amount, net profit and margin are recalculated from the price, cost, shipping and fee %
+     * the same way the add dialog does, so the file's derived columns are ignored.
+     * A blank transaction ID is allocated when the batch is inserted. Safe to call from several threads
+     * @param fields The row's fields in CSV_HEADER order
+     * @param knownSkus SKUs present in stock
+     * @return The sale
+     * @throws IllegalArgumentException if the row is invalid
+     */
+    public static Sale parseCsvRow(List<String> fields, Set<String> knownSkus) {
+        String saleDate = CsvImportTask.parseDate(fields, 0, "Date", false);
+        String transactionId = CsvImportTask.text(fields, 1);
+        String sku = CsvImportTask.requireText(fields, 2, "SKU");
+        if (!knownSkus.contains(sku)) {
+            throw new IllegalArgumentException("SKU " + sku + " is not in stock");
+        }
+        double salePrice = CsvImportTask.parseNumber(fields, 4, "Sale Price", null);
+        double baseCostGbp = CsvImportTask.parseNumber(fields, 5, "Base Cost", null);
+        double shipping = CsvImportTask.parseNumber(fields, 6, "Shipping", 0.0);
+        double feePercent = CsvImportTask.parseNumber(fields, 7, "Fee %", null);
+        if (feePercent > 100) {
+            throw new IllegalArgumentException("Fee % must be between 0 and 100");
+        }
+        
+        double platformFeeAmount = salePrice * (feePercent / 100.0);
+        double netProfit = calculateNetProfit(salePrice, baseCostGbp, shipping, feePercent);
+        return new Sale(
+            transactionId.isEmpty() ? null : transactionId,
+            sku,
+            CsvImportTask.text(fields, 3),
+            baseCostGbp * getExchangeRate(),
+            baseCostGbp,
+            salePrice,
+            shipping,
+            feePercent,
+            platformFeeAmount,
+            netProfit,
+            calculateProfitMargin(netProfit, salePrice),
+            saleDate
+        );
+    }
+    
+    /**
+     * Insert a batch of imported sales with one unordered insertMany
+     * Missing transaction IDs are taken from one reserved counter range, and rows whose
+     * transaction ID already exists are rejected by the unique index without stopping the rest.
+     * The daily rollup and the transaction ID counter are brought up to date for the inserted rows
+     * @param batch The sales to insert
+     * @return Rejected rows as batch index to reason, empty if all were inserted
+     */
+    public Map<Integer, String> insertSales(List<Sale> batch) {
+        if (datastore == null) {
+            throw new NoDatabaseConnectionException();
+        }
+        assignTransactionIds(batch);
+        
+        // Rows are rejected one by one, which a transaction can't do, so the rollup is updated
+        // after the insert. If the insert fails part way it is marked stale until rebuilt
+        Map<Integer, String> rejected = new HashMap<>();
+        try {
+            datastore.insert(batch, new InsertManyOptions().ordered(false));
+        } catch (MongoBulkWriteException e) {
+            for (BulkWriteError error : e.getWriteErrors()) {
+                String reason = error.getCategory() == ErrorCategory.DUPLICATE_KEY
+                        ? "Transaction ID " + batch.get(error.getIndex()).getTransactionId() + " already exists"
+                        : error.getMessage();
+                rejected.put(error.getIndex(), reason);
+            }
+        } catch (RuntimeException e) {
+            markRollupStale(); // Some rows may have been written before the failure
+            throw e;
+        }
+        
+        List<Sale> inserted = new ArrayList<>(batch.size() - rejected.size());
+        long maxId = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            if (!rejected.containsKey(i)) {
+                Sale sale = batch.get(i);
+                inserted.add(sale);
+                maxId = Math.max(maxId, parseTransactionId(sale.getTransactionId()));
+            }
+        }
+        applyRollupChange(session -> salesRollup.recordAddAll(session, inserted));
+        if (maxId > 0) {
+            try {
+                // Imported numeric IDs must never be handed out again
+                getTransactionIdCounter().seed(maxId);
+            } catch (Exception e) {
+                System.err.println("Error updating transaction ID counter: " + e.getMessage());
+            }
+        }
+        return rejected;
+    }
+    
+    /**
+     * Give the sales without a transaction ID consecutive IDs from one counter reservation
+     */
+    private void assignTransactionIds(List<Sale> batch) {
+        int missing = 0;
+        for (Sale sale : batch) {
+            if (sale.getTransactionId() == null) {
+                missing++;
+            }
+        }
+        if (missing == 0) {
+            return;
+        }
+        long next = getTransactionIdCounter().reserve(missing);
+        for (Sale sale : batch) {
+            if (sale.getTransactionId() == null) {
+                sale.setTransactionId(String.valueOf(next++));
+            }
+        }
+    }
+    
+    /**
+     * Read a numeric transaction ID
+     * @return The ID, or 0 if it isn't a whole number
+     */
+    private static long parseTransactionId(String transactionId) {
+        try {
+            return transactionId != null ? Long.parseLong(transactionId) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+    
+    /**
+     * Open a cursor over all stored sales for streaming exports
+     * Documents are fetched from the server in batches as the cursor is read
+     * @return Cursor over all sales, to be closed by the caller
+     */
+    public MorphiaCursor<Sale> openSaleCursor() {
+        if (datastore == null) {
+            throw new NoDatabaseConnectionException();
+        }
+        return datastore.find(Sale.class).iterator(new FindOptions().batchSize(EXPORT_BATCH_SIZE));
+    }
+    
+    /**
+     * Count stored sales from collection metadata
+     * @return Approximate sale count
+     */
+    public long countStoredSales() {
+        if (datastore == null) {
+            throw new NoDatabaseConnectionException();
+        }
+        return Connection.getInstance().getCollection(Sale.class).estimatedDocumentCount();
+    }
+    
+    /**
+     * Get the in-memory indexes over the loaded sales
+     * @return Index sorted by sale day with a SKU hash index
+     */
+    public RowIndex<Sale> getSaleIndex() {
+        return saleIndex;
+    }
+    
     /**
      * Get all sales
      * @return ObservableList of all sales
@@ -265,14 +929,33 @@ public class RevenueModel {
         return sales;
     }
     
+    /**
+     * Keep the running totals in step with the sales list
+     * Each change only adds or removes the affected sales, so statistics stay O(1) to read
+     */
+    private void updateTotals(ListChangeListener.Change<? extends Sale> change) {
+        while (change.next()) {
+            if (change.wasPermutated() || change.wasUpdated()) {
+                continue;
+            }
+            for (Sale removed : change.getRemoved()) {
+                totals.remove(removed);
+            }
+            for (Sale added : change.getAddedSubList()) {
+                totals.add(added);
+            }
+        }
+        if (sales.isEmpty()) {
+            totals.reset(); // Start a reload from exact zero
+        }
+    }
+    
     /**
      * Calculate total revenue
      * @return Total revenue in GBP
      */
     public double calculateTotalRevenue() {
-        return sales.stream()
-                .mapToDouble(Sale::getSalePriceGbp)
-                .sum();
+        return totals.toStatistics().getTotalRevenue();
     }
     
     /**
@@ -280,9 +963,7 @@ public class RevenueModel {
      * @return Total profit in GBP
      */
     public double calculateTotalProfit() {
-        return sales.stream()
-                .mapToDouble(Sale::getNetProfitGbp)
-                .sum();
+        return totals.toStatistics().getTotalProfit();
     }
     
     /**
@@ -290,9 +971,7 @@ public class RevenueModel {
      * @return Total fees in GBP
      */
     public double calculateTotalFees() {
-        return sales.stream()
-                .mapToDouble(Sale::getPlatformFeeAmount)
-                .sum();
+        return totals.toStatistics().getTotalFees();
     }
     
     /**
@@ -300,14 +979,7 @@ public class RevenueModel {
      * @return Average margin percentage
      */
     public double calculateAverageMargin() {
-        if (sales.isEmpty()) {
-            return 0.0;
-        }
-        
-        return sales.stream()
-                .mapToDouble(Sale::getProfitMarginPercent)
-                .average()
-                .orElse(0.0);
+        return totals.toStatistics().getAverageMargin();
     }
     
     /**
@@ -342,6 +1014,90 @@ public class RevenueModel {
                 .orElse(0.0);
     }
     
+    /**
+     * Get the revenue statistics for the loaded sales from the running totals
+     * @return Statistics for all loaded sales
+     */
+    public RevenueStatistics calculateStatistics() {
+        return totals.toStatistics();
+    }
+    
+    /**
+     * Calculate all revenue statistics for a given list of sales in one pass
+     * @param saleList The list of sales to calculate for
+     * @return Statistics for the list
+     */
+    public RevenueStatistics calculateStatistics(List<Sale> saleList) {
+        if (saleList == sales) {
+            return totals.toStatistics(); // An empty search returns the full list
+        }
+        return RevenueStatistics.of(saleList);
+    }
+    
+    /**
+     * Calculate statistics for the sales matching the criteria
+     * Date-only ranges are read from the daily rollup, product criteria are totalled over the
+     * sales columns, and a search text goes through the indexes and the search keys
+     * @param query The search criteria
+     * @return Statistics for the matching sales
+     */
+    public RevenueStatistics calculateStatistics(SaleQuery query) {
+        if (query.isEmpty()) {
+            return totals.toStatistics();
+        }
+        if (query.hasText()) {
+            return RevenueStatistics.of(findSales(query));
+        }
+        if (!query.hasSku() && salesRollup != null) {
+            RevenueStatistics fromRollup = aggregateStatistics(query);
+            if (fromRollup != null) {
+                return fromRollup;
+            }
+        }
+        return getColumns().statistics(query.getFromDay(), query.getToDay(), query.getSku());
+    }
+    
+    /**
+     * Calculate statistics per product for the loaded sales in the query's date range
+     * @param query The search criteria, only the dates are used
+     * @return Statistics by SKU
+     */
+    public Map<String, RevenueStatistics> calculateStatisticsByProduct(SaleQuery query) {
+        return getColumns().statisticsBySku(query.getFromDay(), query.getToDay());
+    }
+    
+    /**
+     * Get the columnar copy of the loaded sales, building it on first use
+     * @return The sales columns, kept in step with the sales list from then on
+     */
+    public SalesColumns getColumns() {
+        if (columns == null) {
+            columns = new SalesColumns(sales);
+        }
+        return columns;
+    }
+    
+    /**
+     * Total a date range from the daily rollup, one row per day instead of every sale
+     * @param query The search criteria, only the dates are used
+     * @return Statistics for all sales in the range, or null if the rollup is stale or can't be read
+     */
+    public RevenueStatistics aggregateStatistics(SaleQuery query) {
+        if (datastore == null) {
+            throw new NoDatabaseConnectionException();
+        }
+        if (rollupStale) {
+            return null;
+        }
+        try {
+            return salesRollup.query(query.getFromDate(), query.getToDate());
+        } catch (Exception e) {
+            System.err.println("Error reading daily sales rollup: " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+    }
+    
     /**
      * Calculate net profit
      * Net Profit = Sale Price - Base Cost (GBP) - Shipping - Platform Fee Amount
@@ -379,31 +1135,84 @@ public class RevenueModel {
     }
     
     /**
-     * Get the next sequential transaction ID
-     * Returns the highest existing transaction ID + 1, or 1 if no sales exist
-     * Transaction IDs are stored as strings but represent sequential numbers
+     * Reserve the next sequential transaction ID
+     * Allocated atomically from the counters collection, so two terminals never get the same ID.
+     * An ID reserved for a sale that is then cancelled is skipped.
+     * Falls back to the highest loaded transaction ID + 1 if the counter can't be reached
      */
     public int getNextTransactionId() {
         try {
-            int maxId = 0;
-            for (Sale sale : sales) {
-                if (sale.getTransactionId() != null && !sale.getTransactionId().isEmpty()) {
-                    try {
-                        int id = Integer.parseInt(sale.getTransactionId());
-                        if (id > maxId) {
-                            maxId = id;
-                        }
-                    } catch (NumberFormatException e) {
-                        // Skip non-numeric transaction IDs
-                    }
-                }
+            return Math.toIntExact(getTransactionIdCounter().next());
+        } catch (Exception e) {
+            System.err.println("Error allocating transaction ID: " + e.getMessage());
+            e.printStackTrace();
+            return findMaxLoadedTransactionId() + 1;
+        }
+    }
+    
+    /**
+     * Initialise the transaction ID counter from the sales already stored
+     * Finds the highest numeric transaction ID with one aggregation and raises the counter to it
+     * @return true if successful, false otherwise
+     */
+    public boolean seedTransactionIdCounter() {
+        if (datastore == null) {
+            throw new NoDatabaseConnectionException();
+        }
+        try {
+            Document result = datastore.getDatabase().getCollection("sales")
+                    .aggregate(Arrays.asList(
+                            Aggregates.group(null, Accumulators.max("maxId",
+                                    new Document("$convert", new Document("input", "$transactionId")
+                                            .append("to", "long")
+                                            .append("onError", null)
+                                            .append("onNull", null))))))
+                    .first();
+            long maxId = 0;
+            if (result != null && result.get("maxId") instanceof Number) {
+                maxId = ((Number) result.get("maxId")).longValue();
             }
-            return maxId + 1;
+            getTransactionIdCounter().seed(maxId);
+            return true;
         } catch (Exception e) {
-            System.err.println("Error getting next transaction ID: " + e.getMessage());
+            System.err.println("Error seeding transaction ID counter: " + e.getMessage());
             e.printStackTrace();
-            return 1; // Default to 1 if there's an error
+            return false;
+        }
+    }
+    
+    /**
+     * Get the shared transaction ID counter, kept for the whole session so a reserved block isn't lost
+     */
+    private SequenceCounter getTransactionIdCounter() {
+        synchronized (RevenueModel.class) {
+            if (transactionIdCounter == null) {
+                transactionIdCounter = new SequenceCounter(datastore.getDatabase(), TRANSACTION_ID_SEQUENCE,
+                        ConfigManager.getTransactionIdBlockSize());
+            }
+            return transactionIdCounter;
         }
     }
+    
+    /**
+     * Find the highest numeric transaction ID among the loaded sales
+     */
+    private int findMaxLoadedTransactionId() {
+        int maxId = 0;
+        for (Sale sale : sales) {
+            if (sale.getTransactionId() != null && !sale.getTransactionId().isEmpty()) {
+                try {
+                    int id = Integer.parseInt(sale.getTransactionId());
+                    if (id > maxId) {
+                        maxId = id;
+                    }
+                } catch (NumberFormatException e) {
+                    // Skip non-numeric transaction IDs
+                }
+            }
+        }
+        return maxId;
+    }
+
 }
 
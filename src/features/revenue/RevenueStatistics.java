@@ -0,0 +1,166 @@
+package features.revenue;
+
+import core.CompensatedSum;
+import org.bson.Document;
+
+/**
+ * Summary figures for a set of sales
+ * Computed in one pass over a list, kept up to date by an Accumulator, or read from a
+ * single aggregation result
+ */
+public class RevenueStatistics {
+    private final long transactionCount;
+    private final double totalRevenue;
+    private final double totalProfit;
+    private final double totalFees;
+    private final double marginSum;
+    
+    /**
+     * Constructor with all fields
+     */
+    public RevenueStatistics(long transactionCount, double totalRevenue, double totalProfit,
+                             double totalFees, double marginSum) {
+        this.transactionCount = transactionCount;
+        this.totalRevenue = totalRevenue;
+        this.totalProfit = totalProfit;
+        this.totalFees = totalFees;
+        this.marginSum = marginSum;
+    }
+    
+    /**
+     * Compute all figures for a list of sales in a single loop
+     * @param sales The sales to summarise
+     * @return Statistics for the sales
+     */
+    public static RevenueStatistics of(Iterable<Sale> sales) {
+        Accumulator accumulator = new Accumulator();
+        for (Sale sale : sales) {
+            accumulator.add(sale);
+        }
+        return accumulator.toStatistics();
+    }
+    
+    /**
+     * Read the figures from a $group result
+     * @param doc Document with count, revenue, profit, fees and marginSum fields, or null
+     * @return Statistics from the document, all zero if null
+     */
+    public static RevenueStatistics fromDocument(Document doc) {
+        if (doc == null) {
+            return new RevenueStatistics(0, 0.0, 0.0, 0.0, 0.0);
+        }
+        return new RevenueStatistics(
+            toLong(doc.get("count")),
+            toDouble(doc.get("revenue")),
+            toDouble(doc.get("profit")),
+            toDouble(doc.get("fees")),
+            toDouble(doc.get("marginSum"))
+        );
+    }
+    
+    private static long toLong(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : 0L;
+    }
+    
+    private static double toDouble(Object value) {
+        return value instanceof Number ? ((Number) value).doubleValue() : 0.0;
+    }
+    
+    // Getters
+    public long getTransactionCount() {
+        return transactionCount;
+    }
+    
+    public double getTotalRevenue() {
+        return totalRevenue;
+    }
+    
+    public double getTotalProfit() {
+        return totalProfit;
+    }
+    
+    public double getTotalFees() {
+        return totalFees;
+    }
+    
+    public double getMarginSum() {
+        return marginSum;
+    }
+    
+    /**
+     * Get average profit margin across the sales
+     * @return Average margin percentage, 0 if there are no sales
+     */
+    public double getAverageMargin() {
+        if (transactionCount == 0) {
+            return 0.0;
+        }
+        return marginSum / transactionCount;
+    }
+    
+    /**
+     * Running totals that are updated by adding and removing single sales
+     * Uses compensated sums, so totals kept up to date through many edits don't drift
+     */
+    public static class Accumulator {
+        private long count;
+        private final CompensatedSum revenue = new CompensatedSum();
+        private final CompensatedSum profit = new CompensatedSum();
+        private final CompensatedSum fees = new CompensatedSum();
+        private final CompensatedSum margins = new CompensatedSum();
+        
+        /**
+         * Add a sale's figures to the totals
+         * @param sale The added sale
+         */
+        public void add(Sale sale) {
+            count++;
+            revenue.add(sale.getSalePriceGbp());
+            profit.add(sale.getNetProfitGbp());
+            fees.add(sale.getPlatformFeeAmount());
+            margins.add(sale.getProfitMarginPercent());
+        }
+        
+        /**
+         * Take a sale's figures out of the totals
+         * @param sale The removed sale
+         */
+        public void remove(Sale sale) {
+            count--;
+            revenue.subtract(sale.getSalePriceGbp());
+            profit.subtract(sale.getNetProfitGbp());
+            fees.subtract(sale.getPlatformFeeAmount());
+            margins.subtract(sale.getProfitMarginPercent());
+        }
+        
+        /**
+         * Set all totals back to zero
+         */
+        public void reset() {
+            count = 0;
+            revenue.reset();
+            profit.reset();
+            fees.reset();
+            margins.reset();
+        }
+        
+        /**
+         * Get the current totals
+         * @return Statistics for the sales added so far
+         */
+        public RevenueStatistics toStatistics() {
+            return new RevenueStatistics(count, revenue.get(), profit.get(), fees.get(), margins.get());
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return "RevenueStatistics{" +
+                "transactionCount=" + transactionCount +
+                ", totalRevenue=" + totalRevenue +
+                ", totalProfit=" + totalProfit +
+                ", totalFees=" + totalFees +
+                ", averageMargin=" + getAverageMargin() +
+                '}';
+    }
+}
@@ -1,19 +1,38 @@
 package features.revenue;
 
+import core.FieldChanges;
+import core.IncrementalSearch;
+import core.RowIndex;
 import dev.morphia.annotations.Entity;
+import dev.morphia.annotations.Field;
 import dev.morphia.annotations.Id;
+import dev.morphia.annotations.Index;
+import dev.morphia.annotations.IndexOptions;
+import dev.morphia.annotations.Indexes;
 import dev.morphia.annotations.Property;
+import dev.morphia.annotations.Transient;
 import org.bson.types.ObjectId;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.Date;
 
 /**
  * Sale entity class for MongoDB
  * Represents a sale transaction in the revenue management system
  */
 @Entity("sales")
+@Indexes({
+    // Transaction IDs must be unique across all terminals
+    @Index(fields = @Field("transactionId"), options = @IndexOptions(unique = true)),
+    // Date range and per-product queries
+    @Index(fields = {@Field("saleDay"), @Field("sku")})
+})
 public class Sale {
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    // Marks an epoch day that hasn't been worked out yet
+    private static final int DAY_UNKNOWN = Integer.MAX_VALUE;
+    
     @Id
     private ObjectId id;
     
@@ -53,6 +72,22 @@ public class Sale {
     @Property("saleDate")
     private String saleDate;
     
+    // BSON date of saleDate at UTC midnight, used by date range queries
+    @Property("saleDay")
+    private Date saleDay;
+    
+    // Raised on every field update, used to detect edits based on a stale copy
+    @Property("version")
+    private long version;
+    
+    // Epoch day of the sale, worked out once and not stored
+    @Transient
+    private int saleEpochDay = DAY_UNKNOWN;
+    
+    // Lowercase text matched by the search box, built on first use and not stored
+    @Transient
+    private String searchKey;
+    
     /**
      * Default constructor required by Morphia
      */
@@ -79,6 +114,7 @@ public class Sale {
         this.netProfitGbp = netProfitGbp;
         this.profitMarginPercent = profitMarginPercent;
         this.saleDate = saleDate;
+        this.saleDay = toSaleDay(saleDate);
     }
     
     /**
@@ -94,6 +130,18 @@ public class Sale {
              profitMarginPercent, LocalDate.now().format(DateTimeFormatter.ISO_LOCAL_DATE));
     }
     
+    /**
+     * Copy constructor, keeps the id so the copy replaces the original on save
+     */
+    public Sale(Sale other) {
+        this(other.transactionId, other.sku, other.productName, other.baseCostPkr,
+             other.baseCostGbp, other.salePriceGbp, other.shippingGbp,
+             other.platformFeePercent, other.platformFeeAmount, other.netProfitGbp,
+             other.profitMarginPercent, other.saleDate);
+        this.id = other.id;
+        this.version = other.version;
+    }
+    
     // Getters and Setters
     public ObjectId getId() {
         return id;
@@ -109,6 +157,7 @@ public class Sale {
     
     public void setTransactionId(String transactionId) {
         this.transactionId = transactionId;
+        this.searchKey = null;
     }
     
     public String getSku() {
@@ -117,6 +166,7 @@ public class Sale {
     
     public void setSku(String sku) {
         this.sku = sku;
+        this.searchKey = null;
     }
     
     public String getProductName() {
@@ -125,6 +175,7 @@ public class Sale {
     
     public void setProductName(String productName) {
         this.productName = productName;
+        this.searchKey = null;
     }
     
     public double getBaseCostPkr() {
@@ -197,6 +248,106 @@ public class Sale {
     
     public void setSaleDate(String saleDate) {
         this.saleDate = saleDate;
+        this.saleDay = toSaleDay(saleDate);
+        this.saleEpochDay = DAY_UNKNOWN;
+    }
+    
+    /**
+     * Set the stored date string without deriving the sale day, for SaleCodec
+     */
+    void setStoredSaleDate(String saleDate) {
+        this.saleDate = saleDate;
+        this.saleEpochDay = DAY_UNKNOWN;
+    }
+    
+    /**
+     * Set the stored sale day as read from the database, for SaleCodec
+     */
+    void setStoredSaleDay(Date saleDay) {
+        this.saleDay = saleDay;
+        this.saleEpochDay = DAY_UNKNOWN;
+    }
+    
+    public Date getSaleDay() {
+        return saleDay;
+    }
+    
+    /**
+     * Get the sale date as an epoch day for date comparisons and the date index
+     * Read from the stored BSON date, the date string is only parsed for sales saved before it existed
+     * @return Days since 1970-01-01, or RowIndex.NO_DAY if the sale has no valid date
+     */
+    public int getSaleEpochDay() {
+        int day = saleEpochDay;
+        if (day == DAY_UNKNOWN) {
+            day = saleDay != null ? (int) Math.floorDiv(saleDay.getTime(), MILLIS_PER_DAY) : parseEpochDay(saleDate);
+            saleEpochDay = day;
+        }
+        return day;
+    }
+    
+    /**
+     * Parse an ISO date string into an epoch day
+     * @param date Date in yyyy-MM-dd format
+     * @return Days since 1970-01-01, or RowIndex.NO_DAY if missing or invalid
+     */
+    public static int parseEpochDay(String date) {
+        if (date == null || date.isEmpty()) {
+            return RowIndex.NO_DAY;
+        }
+        try {
+            return (int) LocalDate.parse(date, DateTimeFormatter.ISO_LOCAL_DATE).toEpochDay();
+        } catch (Exception e) {
+            return RowIndex.NO_DAY;
+        }
+    }
+    
+    public long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(long version) {
+        this.version = version;
+    }
+    
+    /**
+     * Compare the stored fields with the copy this sale was edited from
+     * @param original The sale as loaded
+     * @return The fields that differ, with their new values
+     */
+    public FieldChanges changesSince(Sale original) {
+        return new FieldChanges()
+                .compare("transactionId", original.transactionId, transactionId)
+                .compare("sku", original.sku, sku)
+                .compare("productName", original.productName, productName)
+                .compare("baseCostPkr", original.baseCostPkr, baseCostPkr)
+                .compare("baseCostGbp", original.baseCostGbp, baseCostGbp)
+                .compare("salePriceGbp", original.salePriceGbp, salePriceGbp)
+                .compare("shippingGbp", original.shippingGbp, shippingGbp)
+                .compare("platformFeePercent", original.platformFeePercent, platformFeePercent)
+                .compare("platformFeeAmount", original.platformFeeAmount, platformFeeAmount)
+                .compare("netProfitGbp", original.netProfitGbp, netProfitGbp)
+                .compare("profitMarginPercent", original.profitMarginPercent, profitMarginPercent)
+                .compare("saleDate", original.saleDate, saleDate)
+                .compare("saleDay", original.saleDay, saleDay);
+    }
+    
+    private static Date toSaleDay(String date) {
+        int day = parseEpochDay(date);
+        return day != RowIndex.NO_DAY ? new Date(day * MILLIS_PER_DAY) : null;
+    }
+    
+    /**
+     * Get the lowercase search key for the search box
+     * @return The searchable fields joined into one lowercase string
+     */
+    public String getSearchKey() {
+        String key = searchKey;
+        if (key == null) {
+            key = IncrementalSearch.buildKey(sku, productName, transactionId);
+            searchKey = key;
+        }
+        return key;
     }
     
     @Override
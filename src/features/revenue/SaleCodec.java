@@ -0,0 +1,107 @@
+package features.revenue;
+
+import core.EntityCodec;
+import org.bson.BsonReader;
+import org.bson.BsonWriter;
+import org.bson.types.ObjectId;
+
+/**
+ * BSON codec for Sale, used instead of Morphia's reflective mapping when entity codecs are on
+ */
+public class SaleCodec extends EntityCodec<Sale> {
+    public SaleCodec() {
+        super(Sale.class);
+    }
+    
+    @Override
+    protected Sale newInstance() {
+        return new Sale();
+    }
+    
+    @Override
+    protected ObjectId getId(Sale sale) {
+        return sale.getId();
+    }
+    
+    @Override
+    protected void setId(Sale sale, ObjectId id) {
+        sale.setId(id);
+    }
+    
+    @Override
+    protected boolean readField(Sale sale, String name, BsonReader reader) {
+        switch (name) {
+            case "transactionId":
+                sale.setTransactionId(readString(reader));
+                return true;
+            case "sku":
+                sale.setSku(readString(reader));
+                return true;
+            case "productName":
+                sale.setProductName(readString(reader));
+                return true;
+            case "baseCostPkr":
+                sale.setBaseCostPkr(readDouble(reader));
+                return true;
+            case "baseCostGbp":
+                sale.setBaseCostGbp(readDouble(reader));
+                return true;
+            case "salePriceGbp":
+                sale.setSalePriceGbp(readDouble(reader));
+                return true;
+            case "shippingGbp":
+                sale.setShippingGbp(readDouble(reader));
+                return true;
+            case "platformFeePercent":
+                sale.setPlatformFeePercent(readDouble(reader));
+                return true;
+            case "platformFeeAmount":
+                sale.setPlatformFeeAmount(readDouble(reader));
+                return true;
+            case "netProfitGbp":
+                sale.setNetProfitGbp(readDouble(reader));
+                return true;
+            case "profitMarginPercent":
+                sale.setProfitMarginPercent(readDouble(reader));
+                return true;
+            case "saleDate":
+                // Stored as is, the sale day is only parsed from it if the document has none
+                sale.setStoredSaleDate(readString(reader));
+                return true;
+            case "saleDay":
+                sale.setStoredSaleDay(readDate(reader));
+                return true;
+            case "version":
+                sale.setVersion(readLong(reader));
+                return true;
+            default:
+                return false;
+        }
+    }
+    
+    @Override
+    protected Sale afterDecode(Sale sale) {
+        if (sale.getSaleDay() == null && sale.getSaleDate() != null) {
+            sale.setSaleDate(sale.getSaleDate());
+        }
+        return sale;
+    }
+    
+    @Override
+    protected void writeFields(Sale sale, BsonWriter writer) {
+        writeString(writer, "transactionId", sale.getTransactionId());
+        writeString(writer, "sku", sale.getSku());
+        writeString(writer, "productName", sale.getProductName());
+        writer.writeDouble("baseCostPkr", sale.getBaseCostPkr());
+        writer.writeDouble("baseCostGbp", sale.getBaseCostGbp());
+        writer.writeDouble("salePriceGbp", sale.getSalePriceGbp());
+        writer.writeDouble("shippingGbp", sale.getShippingGbp());
+        writer.writeDouble("platformFeePercent", sale.getPlatformFeePercent());
+        writer.writeDouble("platformFeeAmount", sale.getPlatformFeeAmount());
+        writer.writeDouble("netProfitGbp", sale.getNetProfitGbp());
+        writer.writeDouble("profitMarginPercent", sale.getProfitMarginPercent());
+        writeString(writer, "saleDate", sale.getSaleDate());
+        writeDate(writer, "saleDay", sale.getSaleDay());
+        writer.writeInt64("version", sale.getVersion());
+    }
+}
@@ -0,0 +1,144 @@
+package features.revenue;
+
+import core.RowIndex;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.function.Predicate;
+
+/**
+ * Search criteria for the revenue page: date range, product and search text
+ * All active conditions are checked together in one pass, starting from the smallest
+ * candidate set the in-memory indexes can give
+ */
+public class SaleQuery implements Predicate<Sale> {
+    /** Name of the SKU hash index in the index built by RevenueModel */
+    public static final String SKU_INDEX = "sku";
+    
+    private final LocalDate fromDate;
+    private final LocalDate toDate;
+    private final int fromDay;
+    private final int toDay;
+    private final String sku;
+    private final String text;
+    
+    /**
+     * Create criteria, any argument may be null or empty to leave it out
+     * @param from Start date (inclusive)
+     * @param to End date (inclusive)
+     * @param sku Product SKU
+     * @param text Search text matched against SKU, product name and transaction ID
+     */
+    public SaleQuery(LocalDate from, LocalDate to, String sku, String text) {
+        this.fromDate = from;
+        this.toDate = to;
+        this.fromDay = from != null ? (int) from.toEpochDay() : RowIndex.NO_DAY;
+        this.toDay = to != null ? (int) to.toEpochDay() : RowIndex.NO_DAY;
+        this.sku = sku != null && !sku.trim().isEmpty() ? sku.trim() : null;
+        this.text = text != null && !text.trim().isEmpty() ? text.trim().toLowerCase() : null;
+    }
+    
+    /**
+     * Check whether no condition is set
+     * @return true if every sale matches
+     */
+    public boolean isEmpty() {
+        return !hasFilters() && text == null;
+    }
+    
+    /**
+     * Check whether a date or product condition is set
+     * @return true if the criteria restrict more than the search text
+     */
+    public boolean hasFilters() {
+        return fromDate != null || toDate != null || sku != null;
+    }
+    
+    /**
+     * Check whether a search text is set
+     * @return true if the criteria include a search text
+     */
+    public boolean hasText() {
+        return text != null;
+    }
+    
+    /**
+     * Check whether a product condition is set
+     * @return true if the criteria restrict to one SKU
+     */
+    public boolean hasSku() {
+        return sku != null;
+    }
+    
+    /**
+     * Check all conditions against a sale
+     * @param sale The sale
+     * @return true if the sale matches
+     */
+    @Override
+    public boolean test(Sale sale) {
+        return matchesFilters(sale) && (text == null || sale.getSearchKey().contains(text));
+    }
+    
+    /**
+     * Check the date and product conditions only, leaving the search text to the search box
+     * @param sale The sale
+     * @return true if the sale matches
+     */
+    public boolean matchesFilters(Sale sale) {
+        if (sku != null && !sku.equals(sale.getSku())) {
+            return false;
+        }
+        if (fromDate == null && toDate == null) {
+            return true;
+        }
+        // Compares the cached epoch day, so no per-row parsing or allocation is needed
+        int day = sale.getSaleEpochDay();
+        if (day == RowIndex.NO_DAY) {
+            return false;
+        }
+        return (fromDate == null || day >= fromDay) && (toDate == null || day <= toDay);
+    }
+    
+    /**
+     * Pick the smallest set of sales that can match from the in-memory indexes
+     * Compares the SKU bucket with the date range and starts from whichever is smaller
+     * @param index Index over the loaded sales
+     * @return Candidate sales still to be checked with test(), or null to scan all sales
+     */
+    public Collection<Sale> candidates(RowIndex<Sale> index) {
+        Collection<Sale> bySku = sku != null ? index.bucket(SKU_INDEX, sku) : null;
+        if (fromDate == null && toDate == null) {
+            return bySku;
+        }
+        if (bySku != null && bySku.size() <= index.countRange(fromDay, toDay)) {
+            return bySku;
+        }
+        return index.range(fromDay, toDay);
+    }
+    
+    // Getters
+    public LocalDate getFromDate() {
+        return fromDate;
+    }
+    
+    public LocalDate getToDate() {
+        return toDate;
+    }
+    
+    public int getFromDay() {
+        return fromDay;
+    }
+    
+    public int getToDay() {
+        return toDay;
+    }
+    
+    public String getSku() {
+        return sku;
+    }
+    
+    public String getText() {
+        return text;
+    }
+}
@@ -0,0 +1,251 @@
+package features.revenue;
+
+import core.AttributeDictionary;
+import core.CompensatedSum;
+import core.RowIndex;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column-per-field copy of the loaded sales for analytics
+ * Each figure is held in its own primitive array in the same order as the model's list, and
+ * SKUs are stored as int codes into a dictionary. Totals, date range filters and group-bys run
+ * as plain loops over the arrays instead of reading fields from thousands of Sale objects.
+ * Kept in step with the model's list as sales are added, edited and deleted
+ */
+public class SalesColumns {
+    private final ObservableList<Sale> source;
+    private AttributeDictionary skuDictionary = new AttributeDictionary();
+    private int size;
+    private int[] days = new int[0];
+    private int[] skus = new int[0];
+    private double[] revenue = new double[0];
+    private double[] baseCost = new double[0];
+    private double[] shipping = new double[0];
+    private double[] fees = new double[0];
+    private double[] profit = new double[0];
+    private double[] margin = new double[0];
+    
+    /**
+     * Build the columns from a list of sales and follow its changes
+     * @param source The model's list of sales
+     */
+    public SalesColumns(ObservableList<Sale> source) {
+        this.source = source;
+        rebuild();
+        source.addListener(this::onChange);
+    }
+    
+    /**
+     * Get the number of sales in the columns
+     * @return Sale count
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Get the dictionary code of a SKU
+     * @param sku The SKU
+     * @return The code, or AttributeDictionary.NO_CODE if no loaded sale has the SKU
+     */
+    public int skuCode(String sku) {
+        return skuDictionary.lookup(sku);
+    }
+    
+    /**
+     * Calculate statistics for the sales in a date range, optionally for one product
+     * @param fromDay First epoch day (inclusive), or RowIndex.NO_DAY for no lower bound
+     * @param toDay Last epoch day (inclusive), or RowIndex.NO_DAY for no upper bound
+     * @param sku SKU to restrict to, or null for all products
+     * @return Statistics for the matching sales
+     */
+    public RevenueStatistics statistics(int fromDay, int toDay, String sku) {
+        int code = AttributeDictionary.NO_CODE;
+        if (sku != null) {
+            code = skuCode(sku);
+            if (code == AttributeDictionary.NO_CODE) {
+                return new RevenueStatistics(0, 0.0, 0.0, 0.0, 0.0);
+            }
+        }
+        boolean dated = fromDay != RowIndex.NO_DAY || toDay != RowIndex.NO_DAY;
+        int from = fromDay != RowIndex.NO_DAY ? fromDay : Integer.MIN_VALUE + 1;
+        int to = toDay != RowIndex.NO_DAY ? toDay : Integer.MAX_VALUE;
+        
+        long count = 0;
+        CompensatedSum revenueSum = new CompensatedSum();
+        CompensatedSum profitSum = new CompensatedSum();
+        CompensatedSum feeSum = new CompensatedSum();
+        CompensatedSum marginSum = new CompensatedSum();
+        for (int i = 0; i < size; i++) {
+            // Sales without a date have NO_DAY, which is below every lower bound
+            if ((dated && (days[i] < from || days[i] > to)) || (code != AttributeDictionary.NO_CODE && skus[i] != code)) {
+                continue;
+            }
+            count++;
+            revenueSum.add(revenue[i]);
+            profitSum.add(profit[i]);
+            feeSum.add(fees[i]);
+            marginSum.add(margin[i]);
+        }
+        return new RevenueStatistics(count, revenueSum.get(), profitSum.get(), feeSum.get(), marginSum.get());
+    }
+    
+    /**
+     * Calculate statistics per product for the sales in a date range in one pass
+     * @param fromDay First epoch day (inclusive), or RowIndex.NO_DAY for no lower bound
+     * @param toDay Last epoch day (inclusive), or RowIndex.NO_DAY for no upper bound
+     * @return Statistics by SKU, only for SKUs with at least one matching sale
+     */
+    public Map<String, RevenueStatistics> statisticsBySku(int fromDay, int toDay) {
+        boolean dated = fromDay != RowIndex.NO_DAY || toDay != RowIndex.NO_DAY;
+        int from = fromDay != RowIndex.NO_DAY ? fromDay : Integer.MIN_VALUE + 1;
+        int to = toDay != RowIndex.NO_DAY ? toDay : Integer.MAX_VALUE;
+        
+        // One slot per dictionary code, so grouping is an array index instead of a map lookup.
+        // Each total has a compensation term next to it so groups add up like statistics()
+        List<String> skuNames = skuDictionary.values();
+        int groups = skuNames.size();
+        long[] counts = new long[groups];
+        double[] revenueTotals = new double[groups];
+        double[] revenueErrors = new double[groups];
+        double[] profitTotals = new double[groups];
+        double[] profitErrors = new double[groups];
+        double[] feeTotals = new double[groups];
+        double[] feeErrors = new double[groups];
+        double[] marginTotals = new double[groups];
+        double[] marginErrors = new double[groups];
+        for (int i = 0; i < size; i++) {
+            int code = skus[i];
+            if (code == AttributeDictionary.NO_CODE || (dated && (days[i] < from || days[i] > to))) {
+                continue;
+            }
+            counts[code]++;
+            CompensatedSum.add(revenueTotals, revenueErrors, code, revenue[i]);
+            CompensatedSum.add(profitTotals, profitErrors, code, profit[i]);
+            CompensatedSum.add(feeTotals, feeErrors, code, fees[i]);
+            CompensatedSum.add(marginTotals, marginErrors, code, margin[i]);
+        }
+        
+        Map<String, RevenueStatistics> results = new LinkedHashMap<>();
+        for (int code = 0; code < groups; code++) {
+            if (counts[code] > 0) {
+                results.put(skuNames.get(code), new RevenueStatistics(counts[code],
+                        revenueTotals[code] + revenueErrors[code], profitTotals[code] + profitErrors[code],
+                        feeTotals[code] + feeErrors[code], marginTotals[code] + marginErrors[code]));
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * Calculate the total cost of the sales in a date range
+     * Cost is the base cost plus shipping and platform fees
+     * @param fromDay First epoch day (inclusive), or RowIndex.NO_DAY for no lower bound
+     * @param toDay Last epoch day (inclusive), or RowIndex.NO_DAY for no upper bound
+     * @return Total cost in GBP
+     */
+    public double totalCost(int fromDay, int toDay) {
+        boolean dated = fromDay != RowIndex.NO_DAY || toDay != RowIndex.NO_DAY;
+        int from = fromDay != RowIndex.NO_DAY ? fromDay : Integer.MIN_VALUE + 1;
+        int to = toDay != RowIndex.NO_DAY ? toDay : Integer.MAX_VALUE;
+        
+        CompensatedSum cost = new CompensatedSum();
+        for (int i = 0; i < size; i++) {
+            if (!dated || (days[i] >= from && days[i] <= to)) {
+                cost.add(baseCost[i] + shipping[i] + fees[i]);
+            }
+        }
+        return cost.get();
+    }
+    
+    private void onChange(ListChangeListener.Change<? extends Sale> change) {
+        while (change.next()) {
+            if (change.wasPermutated()) {
+                // The model never reorders its list, so a full rebuild is fine here
+                rebuild();
+                return;
+            }
+            if (change.wasUpdated()) {
+                continue;
+            }
+            if (change.wasRemoved()) {
+                removeRows(change.getFrom(), change.getRemovedSize());
+            }
+            if (change.wasAdded()) {
+                insertRows(change.getFrom(), change.getAddedSubList());
+            }
+        }
+    }
+    
+    private void rebuild() {
+        size = 0;
+        skuDictionary = new AttributeDictionary();
+        ensureCapacity(source.size());
+        for (Sale sale : source) {
+            setRow(size++, sale);
+        }
+    }
+    
+    private void insertRows(int position, List<? extends Sale> added) {
+        int count = added.size();
+        ensureCapacity(size + count);
+        int tail = size - position;
+        System.arraycopy(days, position, days, position + count, tail);
+        System.arraycopy(skus, position, skus, position + count, tail);
+        System.arraycopy(revenue, position, revenue, position + count, tail);
+        System.arraycopy(baseCost, position, baseCost, position + count, tail);
+        System.arraycopy(shipping, position, shipping, position + count, tail);
+        System.arraycopy(fees, position, fees, position + count, tail);
+        System.arraycopy(profit, position, profit, position + count, tail);
+        System.arraycopy(margin, position, margin, position + count, tail);
+        for (int i = 0; i < count; i++) {
+            setRow(position + i, added.get(i));
+        }
+        size += count;
+    }
+    
+    private void removeRows(int position, int count) {
+        int tail = size - position - count;
+        System.arraycopy(days, position + count, days, position, tail);
+        System.arraycopy(skus, position + count, skus, position, tail);
+        System.arraycopy(revenue, position + count, revenue, position, tail);
+        System.arraycopy(baseCost, position + count, baseCost, position, tail);
+        System.arraycopy(shipping, position + count, shipping, position, tail);
+        System.arraycopy(fees, position + count, fees, position, tail);
+        System.arraycopy(profit, position + count, profit, position, tail);
+        System.arraycopy(margin, position + count, margin, position, tail);
+        size -= count;
+    }
+    
+    private void setRow(int row, Sale sale) {
+        days[row] = sale.getSaleEpochDay();
+        skus[row] = skuDictionary.encode(sale.getSku());
+        revenue[row] = sale.getSalePriceGbp();
+        baseCost[row] = sale.getBaseCostGbp();
+        shipping[row] = sale.getShippingGbp();
+        fees[row] = sale.getPlatformFeeAmount();
+        profit[row] = sale.getNetProfitGbp();
+        margin[row] = sale.getProfitMarginPercent();
+    }
+    
+    private void ensureCapacity(int capacity) {
+        if (capacity <= days.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, days.length + (days.length >> 1) + 16);
+        days = Arrays.copyOf(days, newCapacity);
+        skus = Arrays.copyOf(skus, newCapacity);
+        revenue = Arrays.copyOf(revenue, newCapacity);
+        baseCost = Arrays.copyOf(baseCost, newCapacity);
+        shipping = Arrays.copyOf(shipping, newCapacity);
+        fees = Arrays.copyOf(fees, newCapacity);
+        profit = Arrays.copyOf(profit, newCapacity);
+        margin = Arrays.copyOf(margin, newCapacity);
+    }
+}
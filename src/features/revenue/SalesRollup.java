@@ -0,0 +1,284 @@
+package features.revenue;
+
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pre-aggregated daily revenue totals stored in the sales_daily collection
+ * One document per sale date holds the count and the revenue, profit, fee and margin sums,
+ * so date-range totals read one row per day instead of every sale.
+ * Updates take the session of the sale write so both commit together. Without transactions
+ * a rollup update that fails after its sale write is counted in sales_daily_state, which
+ * marks the rollup as stale until it is rebuilt
+ */
+public class SalesRollup {
+    private static final String COLLECTION_NAME = "sales_daily";
+    private static final String STATE_COLLECTION_NAME = "sales_daily_state";
+    private static final String SALES_COLLECTION_NAME = "sales";
+    private static final UpdateOptions UPSERT = new UpdateOptions().upsert(true);
+    
+    private final MongoDatabase database;
+    private final MongoCollection<Document> rollup;
+    private final MongoCollection<Document> state;
+    private final Bson stateId = Filters.eq("_id", COLLECTION_NAME);
+    
+    public SalesRollup(MongoDatabase database) {
+        this.database = database;
+        this.rollup = database.getCollection(COLLECTION_NAME);
+        this.state = database.getCollection(STATE_COLLECTION_NAME);
+    }
+    
+    /**
+     * Add a new sale to its day's totals
+     * @param session The sale write's transaction session, or null
+     * @param sale The added sale
+     */
+    public void recordAdd(ClientSession session, Sale sale) {
+        increment(session, sale, 1);
+    }
+    
+    /**
+     * Add a batch of new sales, e.g. from an import
+     * Sales are summed per day first, so the rollup gets one upsert per day in a single bulkWrite
+     * @param session The sale write's transaction session, or null
+     * @param sales The added sales
+     */
+    public void recordAddAll(ClientSession session, Collection<Sale> sales) {
+        incrementAll(session, sales, 1);
+    }
+    
+    /**
+     * Remove a batch of deleted sales from their days' totals in a single bulkWrite
+     * @param session The sale write's transaction session, or null
+     * @param sales The deleted sales
+     */
+    public void recordDeleteAll(ClientSession session, Collection<Sale> sales) {
+        incrementAll(session, sales, -1);
+    }
+    
+    /**
+     * Remove a deleted sale from its day's totals
+     * @param session The sale write's transaction session, or null
+     * @param sale The deleted sale
+     */
+    public void recordDelete(ClientSession session, Sale sale) {
+        increment(session, sale, -1);
+    }
+    
+    /**
+     * Replace an edited sale's old figures with its new ones
+     * @param session The sale write's transaction session, or null
+     * @param oldSale The sale as it was before the edit
+     * @param newSale The sale after the edit
+     */
+    public void recordUpdate(ClientSession session, Sale oldSale, Sale newSale) {
+        if (oldSale == null) {
+            recordAdd(session, newSale);
+            return;
+        }
+        if (oldSale.getSaleDate() != null && oldSale.getSaleDate().equals(newSale.getSaleDate())) {
+            // Same day: apply the difference in a single $inc
+            upsert(session, Filters.eq("_id", newSale.getSaleDate()),
+                    Updates.combine(
+                            Updates.inc("revenue", newSale.getSalePriceGbp() - oldSale.getSalePriceGbp()),
+                            Updates.inc("profit", newSale.getNetProfitGbp() - oldSale.getNetProfitGbp()),
+                            Updates.inc("fees", newSale.getPlatformFeeAmount() - oldSale.getPlatformFeeAmount()),
+                            Updates.inc("marginSum", newSale.getProfitMarginPercent() - oldSale.getProfitMarginPercent())));
+            return;
+        }
+        recordDelete(session, oldSale);
+        recordAdd(session, newSale);
+    }
+    
+    /**
+     * Record that a sale write without a transaction was not followed by its rollup update
+     */
+    public void markStale() {
+        state.updateOne(stateId, Updates.inc("failures", 1), UPSERT);
+    }
+    
+    /**
+     * Check whether a rollup update failed since the last rebuild
+     * @return true if the rollup may not match the sales collection
+     */
+    public boolean isStale() {
+        return failures() > 0;
+    }
+    
+    private long failures() {
+        Document current = state.find(stateId).first();
+        Number failures = current != null ? current.get("failures", Number.class) : null;
+        return failures != null ? failures.longValue() : 0;
+    }
+    
+    /**
+     * Apply a batch of sales to their days' totals, summed per day first
+     * @param session The transaction session, or null
+     * @param sales The sales
+     * @param sign 1 to add the sales, -1 to remove them
+     */
+    private void incrementAll(ClientSession session, Collection<Sale> sales, int sign) {
+        Map<String, double[]> days = new HashMap<>();
+        for (Sale sale : sales) {
+            if (sale.getSaleDate() == null || sale.getSaleDate().isEmpty()) {
+                continue;
+            }
+            double[] totals = days.computeIfAbsent(sale.getSaleDate(), day -> new double[5]);
+            totals[0] += sign;
+            totals[1] += sign * sale.getSalePriceGbp();
+            totals[2] += sign * sale.getNetProfitGbp();
+            totals[3] += sign * sale.getPlatformFeeAmount();
+            totals[4] += sign * sale.getProfitMarginPercent();
+        }
+        if (days.isEmpty()) {
+            return;
+        }
+        
+        List<WriteModel<Document>> updates = new ArrayList<>(days.size());
+        for (Map.Entry<String, double[]> day : days.entrySet()) {
+            double[] totals = day.getValue();
+            updates.add(new UpdateOneModel<>(Filters.eq("_id", day.getKey()),
+                    Updates.combine(
+                            Updates.inc("count", (int) totals[0]),
+                            Updates.inc("revenue", totals[1]),
+                            Updates.inc("profit", totals[2]),
+                            Updates.inc("fees", totals[3]),
+                            Updates.inc("marginSum", totals[4])),
+                    UPSERT));
+        }
+        BulkWriteOptions options = new BulkWriteOptions().ordered(false);
+        if (session != null) {
+            rollup.bulkWrite(session, updates, options);
+        } else {
+            rollup.bulkWrite(updates, options);
+        }
+        
+        if (sign < 0) {
+            // Drop days that no longer have any sales
+            Bson emptyDays = Filters.and(Filters.in("_id", days.keySet()), Filters.lte("count", 0));
+            if (session != null) {
+                rollup.deleteMany(session, emptyDays);
+            } else {
+                rollup.deleteMany(emptyDays);
+            }
+        }
+    }
+    
+    /**
+     * Regenerate the whole rollup from the sales collection
+     * Runs as one aggregation whose $out stage replaces sales_daily. The failures seen before it
+     * started are then cleared, unless another terminal recorded a new one in the meantime
+     */
+    public void rebuild() {
+        long failures = failures();
+        database.getCollection(SALES_COLLECTION_NAME)
+                .aggregate(Arrays.asList(
+                        Aggregates.match(Filters.and(Filters.exists("saleDate"), Filters.ne("saleDate", ""))),
+                        Aggregates.group("$saleDate",
+                                Accumulators.sum("count", 1),
+                                Accumulators.sum("revenue", "$salePriceGbp"),
+                                Accumulators.sum("profit", "$netProfitGbp"),
+                                Accumulators.sum("fees", "$platformFeeAmount"),
+                                Accumulators.sum("marginSum", "$profitMarginPercent")),
+                        Aggregates.out(COLLECTION_NAME)))
+                .toCollection();
+        if (failures > 0) {
+            state.updateOne(Filters.and(stateId, Filters.eq("failures", failures)), Updates.set("failures", 0));
+        }
+    }
+    
+    /**
+     * Check whether the rollup has no rows yet
+     * @return true if sales_daily is empty
+     */
+    public boolean isEmpty() {
+        return rollup.estimatedDocumentCount() == 0;
+    }
+    
+    /**
+     * Total the rollup rows of a date range
+     * @param from Start date (inclusive), or null for no lower bound
+     * @param to End date (inclusive), or null for no upper bound
+     * @return Statistics for all sales in the range
+     */
+    public RevenueStatistics query(LocalDate from, LocalDate to) {
+        List<Bson> conditions = new ArrayList<>();
+        if (from != null) {
+            conditions.add(Filters.gte("_id", from.format(DateTimeFormatter.ISO_LOCAL_DATE)));
+        }
+        if (to != null) {
+            conditions.add(Filters.lte("_id", to.format(DateTimeFormatter.ISO_LOCAL_DATE)));
+        }
+        
+        List<Bson> pipeline = new ArrayList<>();
+        if (!conditions.isEmpty()) {
+            pipeline.add(Aggregates.match(Filters.and(conditions)));
+        }
+        pipeline.add(Aggregates.group(null,
+                Accumulators.sum("count", "$count"),
+                Accumulators.sum("revenue", "$revenue"),
+                Accumulators.sum("profit", "$profit"),
+                Accumulators.sum("fees", "$fees"),
+                Accumulators.sum("marginSum", "$marginSum")));
+        
+        return RevenueStatistics.fromDocument(rollup.aggregate(pipeline).first());
+    }
+    
+    /**
+     * Add or subtract one sale's figures from its day's row
+     * @param session The transaction session, or null
+     * @param sale The sale
+     * @param sign 1 to add, -1 to subtract
+     */
+    private void increment(ClientSession session, Sale sale, int sign) {
+        if (sale.getSaleDate() == null || sale.getSaleDate().isEmpty()) {
+            return;
+        }
+        Bson day = Filters.eq("_id", sale.getSaleDate());
+        upsert(session, day,
+                Updates.combine(
+                        Updates.inc("count", sign),
+                        Updates.inc("revenue", sign * sale.getSalePriceGbp()),
+                        Updates.inc("profit", sign * sale.getNetProfitGbp()),
+                        Updates.inc("fees", sign * sale.getPlatformFeeAmount()),
+                        Updates.inc("marginSum", sign * sale.getProfitMarginPercent())));
+        
+        if (sign < 0) {
+            // Drop days that no longer have any sales
+            Bson emptyDay = Filters.and(day, Filters.lte("count", 0));
+            if (session != null) {
+                rollup.deleteOne(session, emptyDay);
+            } else {
+                rollup.deleteOne(emptyDay);
+            }
+        }
+    }
+    
+    private void upsert(ClientSession session, Bson filter, Bson update) {
+        if (session != null) {
+            rollup.updateOne(session, filter, update, UPSERT);
+        } else {
+            rollup.updateOne(filter, update, UPSERT);
+        }
+    }
+}
@@ -2,17 +2,12 @@ package features.settingsPage;
 
 import core.ConfigManager;
 import core.Connection;
+import core.PageNavigator;
 import com.mongodb.client.MongoClients;
-import features.revenue.RevenueController;
-import features.revenue.RevenueModel;
-import features.stock.StockController;
-import features.stock.StockModel;
-import javafx.application.Platform;
+import features.revenue.SalesRollup;
+import javafx.concurrent.Task;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.scene.control.TextField;
@@ -20,6 +15,8 @@ import javafx.scene.layout.AnchorPane;
 import javafx.stage.Stage;
 
 import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.ResourceBundle;
 
 public class SettingsController implements Initializable {
@@ -33,6 +30,7 @@ public class SettingsController implements Initializable {
     @FXML private Button saveBtn;
     @FXML private Button testConnectionBtn;
     @FXML private Button resetBtn;
+    @FXML private Button rebuildRollupBtn;
     
     @Override
     public void initialize(URL location, ResourceBundle resources) {
@@ -79,8 +77,10 @@ public class SettingsController implements Initializable {
         // Save settings
         try {
             String connectionString = connectionStringField.getText().trim();
-            ConfigManager.setConnectionString(connectionString.isEmpty() ? null : connectionString);
-            ConfigManager.setGbpToPkrRate(exchangeRate);
+            Map<String, String> values = new LinkedHashMap<>();
+            values.put(ConfigManager.CONNECTION_STRING, connectionString);
+            values.put(ConfigManager.GBP_TO_PKR_RATE, String.valueOf(exchangeRate));
+            ConfigManager.setValues(values);
             
             showAlert(Alert.AlertType.INFORMATION, "Success", 
                 "Settings saved successfully. Restart the application for database connection changes to take effect.");
@@ -119,6 +119,44 @@ public class SettingsController implements Initializable {
         }
     }
     
+    /**
+     * Regenerate the daily revenue totals from the sales collection on a background thread
+     * Repairs the revenue page's date-range totals if they got out of step with the sales
+     */
+    @FXML
+    private void handleRebuildRollup() {
+        if (!Connection.getInstance().isConnected()) {
+            showAlert(Alert.AlertType.WARNING, "No Database Connection",
+                "Connect to a database before rebuilding revenue totals");
+            return;
+        }
+        
+        SalesRollup rollup = new SalesRollup(Connection.getInstance().getDatastore().getDatabase());
+        Task<Void> task = new Task<Void>() {
+            @Override
+            protected Void call() {
+                rollup.rebuild();
+                return null;
+            }
+        };
+        task.setOnSucceeded(event -> {
+            rebuildRollupBtn.setDisable(false);
+            showAlert(Alert.AlertType.INFORMATION, "Success",
+                "Daily revenue totals were rebuilt from the sales collection.");
+        });
+        task.setOnFailed(event -> {
+            rebuildRollupBtn.setDisable(false);
+            showAlert(Alert.AlertType.ERROR, "Error",
+                "Failed to rebuild revenue totals: " + task.getException().getMessage());
+            task.getException().printStackTrace();
+        });
+        
+        rebuildRollupBtn.setDisable(true);
+        Thread thread = new Thread(task, "rollup-rebuild");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
     /**
      * Reset fields to default values
      */
@@ -171,55 +209,7 @@ public class SettingsController implements Initializable {
     
     private void navigateToPage(String fxmlPath, String title) {
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource(fxmlPath));
-            Parent root = loader.load();
-            
-            // Special handling for stock page - initialize model
-            if (fxmlPath.contains("stock.fxml")) {
-                StockController controller = loader.getController();
-                try {
-                    StockModel stockModel = new StockModel();
-                    controller.setModel(stockModel);
-                } catch (core.NoDatabaseConnectionException e) {
-                    core.DatabaseAccessHandler.showNoConnectionAlert(getStage());
-                    return;
-                }
-            }
-            // Special handling for revenue page - initialize model
-            else if (fxmlPath.contains("revenue.fxml")) {
-                RevenueController controller = loader.getController();
-                try {
-                    RevenueModel revenueModel = new RevenueModel();
-                    controller.setModel(revenueModel);
-                } catch (core.NoDatabaseConnectionException e) {
-                    core.DatabaseAccessHandler.showNoConnectionAlert(getStage());
-                    return;
-                }
-            }
-            // Special handling for logs page - initialize model
-            else if (fxmlPath.contains("log.fxml")) {
-                features.logsPage.LogsController controller = loader.getController();
-                try {
-                    features.logsPage.LogModel logModel = new features.logsPage.LogModel();
-                    controller.setModel(logModel);
-                } catch (core.NoDatabaseConnectionException e) {
-                    core.DatabaseAccessHandler.showNoConnectionAlert(getStage());
-                    return;
-                }
-            }
-            
-            Stage stage = getStage();
-            if (stage != null) {
-                Scene scene = new Scene(root, 1100, 700);
-                stage.setScene(scene);
-                stage.setTitle(title);
-                
-                // Force layout recalculation
-                Platform.runLater(() -> {
-                    stage.sizeToScene();
-                    root.requestLayout();
-                });
-            }
+            PageNavigator.navigateTo(getStage(), getClass().getResource(fxmlPath), title);
         } catch (Exception e) {
             Alert alert = new Alert(Alert.AlertType.ERROR);
             alert.setTitle("Navigation Error");
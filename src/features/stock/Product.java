@@ -1,8 +1,15 @@
 package features.stock;
 
+import core.FieldChanges;
+import core.IncrementalSearch;
 import dev.morphia.annotations.Entity;
+import dev.morphia.annotations.Field;
 import dev.morphia.annotations.Id;
+import dev.morphia.annotations.Index;
+import dev.morphia.annotations.IndexOptions;
+import dev.morphia.annotations.Indexes;
 import dev.morphia.annotations.Property;
+import dev.morphia.annotations.Transient;
 import org.bson.types.ObjectId;
 
 import java.time.LocalDate;
@@ -13,6 +20,10 @@ import java.time.format.DateTimeFormatter;
  * Represents a product in the stock management system
  */
 @Entity("products")
+@Indexes({
+    // SKU lookups and duplicate detection are served by this index
+    @Index(fields = @Field("sku"), options = @IndexOptions(unique = true))
+})
 public class Product {
     @Id
     private ObjectId id;
@@ -47,6 +58,26 @@ public class Product {
     @Property("dateAdded")
     private String dateAdded;
     
+    // Raised on every field update, used to detect edits based on a stale copy
+    @Property("version")
+    private long version;
+    
+    // Lowercase text matched by the search box, built on first use and not stored
+    @Transient
+    private String searchKey;
+    
+    // Dictionary codes of size, color, material and brand, see internAttributes()
+    @Transient
+    private boolean attributesInterned;
+    @Transient
+    private int sizeCode;
+    @Transient
+    private int colorCode;
+    @Transient
+    private int materialCode;
+    @Transient
+    private int brandCode;
+    
     /**
      * Default constructor required by Morphia
      */
@@ -69,6 +100,7 @@ public class Product {
         this.quantity = quantity;
         this.quantitySold = quantitySold;
         this.dateAdded = dateAdded;
+        internAttributes();
     }
     
     /**
@@ -81,6 +113,16 @@ public class Product {
              LocalDate.now().format(DateTimeFormatter.ISO_LOCAL_DATE));
     }
     
+    /**
+     * Copy constructor, keeps the id so the copy replaces the original on save
+     */
+    public Product(Product other) {
+        this(other.sku, other.name, other.size, other.color, other.material, other.brand,
+             other.baseCostPkr, other.quantity, other.quantitySold, other.dateAdded);
+        this.id = other.id;
+        this.version = other.version;
+    }
+    
     // Getters and Setters
     public ObjectId getId() {
         return id;
@@ -96,6 +138,7 @@ public class Product {
     
     public void setSku(String sku) {
         this.sku = sku;
+        this.searchKey = null;
     }
     
     public String getName() {
@@ -104,6 +147,7 @@ public class Product {
     
     public void setName(String name) {
         this.name = name;
+        this.searchKey = null;
     }
     
     public String getSize() {
@@ -112,6 +156,7 @@ public class Product {
     
     public void setSize(String size) {
         this.size = size;
+        this.attributesInterned = false;
     }
     
     public String getColor() {
@@ -120,6 +165,7 @@ public class Product {
     
     public void setColor(String color) {
         this.color = color;
+        this.attributesInterned = false;
     }
     
     public String getMaterial() {
@@ -128,6 +174,7 @@ public class Product {
     
     public void setMaterial(String material) {
         this.material = material;
+        this.attributesInterned = false;
     }
     
     public String getBrand() {
@@ -136,6 +183,8 @@ public class Product {
     
     public void setBrand(String brand) {
         this.brand = brand;
+        this.searchKey = null;
+        this.attributesInterned = false;
     }
     
     public double getBaseCostPkr() {
@@ -162,6 +211,14 @@ public class Product {
         this.quantity = quantity;
     }
     
+    public long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(long version) {
+        this.version = version;
+    }
+    
     public int getQuantitySold() {
         return quantitySold;
     }
@@ -170,6 +227,75 @@ public class Product {
         this.quantitySold = quantitySold;
     }
     
+    /**
+     * Swap the attribute strings for the shared dictionary instances and keep their codes
+     * Called for every loaded product, so duplicate values don't each keep their own String
+     */
+    public void internAttributes() {
+        sizeCode = ProductAttribute.SIZE.getDictionary().encode(size);
+        colorCode = ProductAttribute.COLOR.getDictionary().encode(color);
+        materialCode = ProductAttribute.MATERIAL.getDictionary().encode(material);
+        brandCode = ProductAttribute.BRAND.getDictionary().encode(brand);
+        size = ProductAttribute.SIZE.getDictionary().decode(sizeCode);
+        color = ProductAttribute.COLOR.getDictionary().decode(colorCode);
+        material = ProductAttribute.MATERIAL.getDictionary().decode(materialCode);
+        brand = ProductAttribute.BRAND.getDictionary().decode(brandCode);
+        attributesInterned = true;
+    }
+    
+    /**
+     * Get the dictionary code of an attribute value, for filters and group-bys
+     * @param attribute The attribute
+     * @return The code in the attribute's dictionary, or AttributeDictionary.NO_CODE if not set
+     */
+    public int getAttributeCode(ProductAttribute attribute) {
+        if (!attributesInterned) {
+            internAttributes();
+        }
+        switch (attribute) {
+            case SIZE:
+                return sizeCode;
+            case COLOR:
+                return colorCode;
+            case MATERIAL:
+                return materialCode;
+            default:
+                return brandCode;
+        }
+    }
+    
+    /**
+     * Compare the stored fields with the copy this product was edited from
+     * @param original The product as loaded
+     * @return The fields that differ, with their new values
+     */
+    public FieldChanges changesSince(Product original) {
+        return new FieldChanges()
+                .compare("sku", original.sku, sku)
+                .compare("name", original.name, name)
+                .compare("size", original.size, size)
+                .compare("color", original.color, color)
+                .compare("material", original.material, material)
+                .compare("brand", original.brand, brand)
+                .compare("baseCostPkr", original.baseCostPkr, baseCostPkr)
+                .compare("quantity", original.quantity, quantity)
+                .compare("quantitySold", original.quantitySold, quantitySold)
+                .compare("dateAdded", original.dateAdded, dateAdded);
+    }
+    
+    /**
+     * Get the lowercase search key for the search box
+     * @return The searchable fields joined into one lowercase string
+     */
+    public String getSearchKey() {
+        String key = searchKey;
+        if (key == null) {
+            key = IncrementalSearch.buildKey(sku, name, brand);
+            searchKey = key;
+        }
+        return key;
+    }
+    
     @Override
     public String toString() {
         return "Product{" +
@@ -0,0 +1,24 @@
+package features.stock;
+
+import core.AttributeDictionary;
+
+/**
+ * Descriptive product attributes that repeat across many products
+ * Each attribute has its own dictionary, shared by all loaded products
+ */
+public enum ProductAttribute {
+    SIZE,
+    COLOR,
+    MATERIAL,
+    BRAND;
+    
+    private final AttributeDictionary dictionary = new AttributeDictionary();
+    
+    /**
+     * Get the value table of this attribute
+     * @return The dictionary
+     */
+    public AttributeDictionary getDictionary() {
+        return dictionary;
+    }
+}
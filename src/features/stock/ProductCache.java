@@ -0,0 +1,204 @@
+package features.stock;
+
+import dev.morphia.Datastore;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Process-wide cache of products keyed by SKU
+ * Shared by StockModel and RevenueModel so SKU lookups don't need a database round trip.
+ * The cache is bounded (least recently used entries are evicted), and a product cached for
+ * longer than the refresh interval is fetched again on its next lookup, so changes made on
+ * another terminal are picked up.
+ */
+public class ProductCache {
+    private static final int MAX_ENTRIES = 50_000;
+    private static final long REFRESH_INTERVAL_MILLIS = 5 * 60 * 1000;
+    
+    private static ProductCache instance;
+    
+    private final Map<String, CachedProduct> productsBySku;
+    // True when the cache holds the whole catalogue, so a miss means "no such SKU"
+    private boolean complete;
+    private long loadedAt;
+    // Sorted SKUs of the whole catalogue, loaded on its own with a projection query
+    private List<String> skuList;
+    private Set<String> skuSet;
+    
+    private ProductCache() {
+        productsBySku = new LinkedHashMap<String, CachedProduct>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedProduct> eldest) {
+                if (size() > MAX_ENTRIES) {
+                    complete = false;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+    
+    /**
+     * Get the shared cache instance
+     * @return ProductCache instance
+     */
+    public static synchronized ProductCache getInstance() {
+        if (instance == null) {
+            instance = new ProductCache();
+        }
+        return instance;
+    }
+    
+    /**
+     * Replace the cache contents with a freshly loaded catalogue
+     * @param products All products in the database
+     */
+    public synchronized void replaceAll(Collection<Product> products) {
+        productsBySku.clear();
+        loadedAt = System.currentTimeMillis();
+        for (Product product : products) {
+            if (product.getSku() != null) {
+                productsBySku.put(product.getSku(), new CachedProduct(product, loadedAt));
+            }
+        }
+        complete = products.size() <= MAX_ENTRIES;
+        
+        List<String> skus = new ArrayList<>();
+        for (Product product : products) {
+            if (product.getSku() != null && !product.getSku().isEmpty()) {
+                skus.add(product.getSku());
+            }
+        }
+        Collections.sort(skus);
+        setSkuList(skus);
+    }
+    
+    /**
+     * Look up a product in memory only
+     * @param sku The SKU to look up
+     * @return The cached product, or null if not cached or cached too long ago
+     */
+    public synchronized Product peek(String sku) {
+        if (sku == null) {
+            return null;
+        }
+        CachedProduct entry = productsBySku.get(sku);
+        return entry != null && isFresh(entry.cachedAt) ? entry.product : null;
+    }
+    
+    /**
+     * Look up a product, going to the database on a miss the cache can't answer
+     * or when the cached copy is older than the refresh interval
+     * @param sku The SKU to look up
+     * @param datastore Datastore used on a cache miss
+     * @return Product if found, null otherwise
+     */
+    public Product get(String sku, Datastore datastore) {
+        if (sku == null) {
+            return null;
+        }
+        synchronized (this) {
+            CachedProduct cached = productsBySku.get(sku);
+            if (cached != null && isFresh(cached.cachedAt)) {
+                return cached.product;
+            }
+            if (cached == null && complete && isFresh(loadedAt)) {
+                return null; // Whole catalogue is cached, so the SKU doesn't exist
+            }
+        }
+        
+        Product product = datastore.find(Product.class)
+                .filter("sku", sku)
+                .first();
+        if (product != null) {
+            put(product);
+        } else {
+            synchronized (this) {
+                productsBySku.remove(sku); // Deleted on another terminal
+            }
+        }
+        return product;
+    }
+    
+    /**
+     * Add or replace a product after it was written
+     * @param product The saved product
+     */
+    public synchronized void put(Product product) {
+        if (product.getSku() != null) {
+            productsBySku.put(product.getSku(), new CachedProduct(product, System.currentTimeMillis()));
+            if (skuSet != null && !skuSet.contains(product.getSku())) {
+                clearSkuList(); // New SKU, the list is reloaded on next use
+            }
+        }
+    }
+    
+    /**
+     * Drop a product after it was deleted
+     * @param sku The SKU of the deleted product
+     */
+    public synchronized void remove(String sku) {
+        if (sku != null) {
+            productsBySku.remove(sku);
+            clearSkuList();
+        }
+    }
+    
+    /**
+     * Get the sorted SKUs of every product
+     * @return Unmodifiable list of SKUs, or null if not loaded or invalidated by a product write
+     */
+    public synchronized List<String> getSkuList() {
+        return skuList;
+    }
+    
+    /**
+     * Store the sorted SKUs of every product
+     * @param skus SKUs in display order
+     */
+    public synchronized void setSkuList(List<String> skus) {
+        skuList = Collections.unmodifiableList(new ArrayList<>(skus));
+        skuSet = new HashSet<>(skus);
+    }
+    
+    /**
+     * Check whether a SKU exists, using only memory
+     * @param sku The SKU to check
+     * @return true if the SKU is in the loaded SKU list or the product is cached
+     */
+    public synchronized boolean isKnownSku(String sku) {
+        if (sku == null) {
+            return false;
+        }
+        return (skuSet != null && skuSet.contains(sku)) || productsBySku.containsKey(sku);
+    }
+    
+    private void clearSkuList() {
+        skuList = null;
+        skuSet = null;
+    }
+    
+    private static boolean isFresh(long cachedAt) {
+        return cachedAt > 0 && System.currentTimeMillis() - cachedAt < REFRESH_INTERVAL_MILLIS;
+    }
+    
+    /**
+     * A cached product with the time it was loaded or written
+     */
+    private static final class CachedProduct {
+        final Product product;
+        final long cachedAt;
+        
+        CachedProduct(Product product, long cachedAt) {
+            this.product = product;
+            this.cachedAt = cachedAt;
+        }
+    }
+}
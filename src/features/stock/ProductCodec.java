@@ -0,0 +1,86 @@
+package features.stock;
+
+import core.EntityCodec;
+import org.bson.BsonReader;
+import org.bson.BsonWriter;
+import org.bson.types.ObjectId;
+
+/**
+ * BSON codec for Product, used instead of Morphia's reflective mapping when entity codecs are on
+ */
+public class ProductCodec extends EntityCodec<Product> {
+    public ProductCodec() {
+        super(Product.class);
+    }
+    
+    @Override
+    protected Product newInstance() {
+        return new Product();
+    }
+    
+    @Override
+    protected ObjectId getId(Product product) {
+        return product.getId();
+    }
+    
+    @Override
+    protected void setId(Product product, ObjectId id) {
+        product.setId(id);
+    }
+    
+    @Override
+    protected boolean readField(Product product, String name, BsonReader reader) {
+        switch (name) {
+            case "sku":
+                product.setSku(readString(reader));
+                return true;
+            case "name":
+                product.setName(readString(reader));
+                return true;
+            case "size":
+                product.setSize(readString(reader));
+                return true;
+            case "color":
+                product.setColor(readString(reader));
+                return true;
+            case "material":
+                product.setMaterial(readString(reader));
+                return true;
+            case "brand":
+                product.setBrand(readString(reader));
+                return true;
+            case "baseCostPkr":
+                product.setBaseCostPkr(readDouble(reader));
+                return true;
+            case "quantity":
+                product.setQuantity(readInt(reader));
+                return true;
+            case "quantitySold":
+                product.setQuantitySold(readInt(reader));
+                return true;
+            case "dateAdded":
+                product.setDateAdded(readString(reader));
+                return true;
+            case "version":
+                product.setVersion(readLong(reader));
+                return true;
+            default:
+                return false;
+        }
+    }
+    
+    @Override
+    protected void writeFields(Product product, BsonWriter writer) {
+        writeString(writer, "sku", product.getSku());
+        writeString(writer, "name", product.getName());
+        writeString(writer, "size", product.getSize());
+        writeString(writer, "color", product.getColor());
+        writeString(writer, "material", product.getMaterial());
+        writeString(writer, "brand", product.getBrand());
+        writer.writeDouble("baseCostPkr", product.getBaseCostPkr());
+        writer.writeInt32("quantity", product.getQuantity());
+        writer.writeInt32("quantitySold", product.getQuantitySold());
+        writeString(writer, "dateAdded", product.getDateAdded());
+        writer.writeInt64("version", product.getVersion());
+    }
+}
@@ -1,15 +1,16 @@
 package features.stock;
 
+import core.ConflictingUpdateException;
+import core.CsvExportTask;
+import core.CsvImportTask;
 import core.DatabaseAccessHandler;
+import core.IncrementalSearch;
 import core.LoggingService;
 import core.NoDatabaseConnectionException;
-import javafx.application.Platform;
-import javafx.collections.ObservableList;
+import core.PageNavigator;
+import javafx.collections.ListChangeListener;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.AnchorPane;
 import javafx.scene.layout.VBox;
@@ -17,18 +18,25 @@ import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
 import java.io.File;
-import java.io.PrintWriter;
 import java.net.URL;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.ResourceBundle;
+import java.util.function.Predicate;
 
 /**
  * Controller for the stock feature
  * Handles user input and updates the view based on model changes
  */
 public class StockController implements Initializable {
+    private static final int MAX_SHOWN_IMPORT_ERRORS = 20;
+    
     private StockModel model;
+    private CsvExportTask<Product> exportTask;
+    private CsvImportTask<Product> importTask;
+    private IncrementalSearch<Product> search;
     
     // Main UI elements
     @FXML private VBox sidebar;
@@ -39,11 +47,14 @@ public class StockController implements Initializable {
     @FXML private Button editProductBtn;
     @FXML private Button deleteProductBtn;
     @FXML private Button exportBtn;
+    @FXML private Button importBtn;
     @FXML private Button searchBtn;
     @FXML private Button clearFilterBtn;
     
     // Search and filter
     @FXML private TextField searchBox;
+    @FXML private ComboBox<String> filterBrand;
+    @FXML private ComboBox<String> filterMaterial;
     
     // Table
     @FXML private TableView<Product> productsTable;
@@ -68,6 +79,7 @@ public class StockController implements Initializable {
     @FXML private AnchorPane addProductDialog;
     @FXML private AnchorPane editProductDialog;
     @FXML private AnchorPane deleteConfirmDialog;
+    @FXML private AnchorPane bulkEditDialog;
     @FXML private AnchorPane exportConfirmDialog;
     
     // Add product dialog fields
@@ -92,6 +104,12 @@ public class StockController implements Initializable {
     @FXML private TextField editQuantityField;
     @FXML private TextField editQuantitySoldField;
     
+    // Bulk edit dialog
+    @FXML private Label bulkEditInfoLabel;
+    @FXML private TextField bulkBrandField;
+    @FXML private TextField bulkQuantityField;
+    @FXML private TextField bulkPriceField;
+    
     // Delete dialog
     @FXML private Label deleteProductNameLabel;
     
@@ -103,6 +121,9 @@ public class StockController implements Initializable {
      */
     public void setModel(StockModel model) {
         this.model = model;
+        if (productsTable != null) {
+            productsTable.setPlaceholder(new Label("No products"));
+        }
         setupTableView();
         bindModelToView();
         updateStatistics();
@@ -111,8 +132,13 @@ public class StockController implements Initializable {
     @Override
     public void initialize(URL location, ResourceBundle resources) {
         // This is called after FXML loading
-        // Model will be set separately by the main application
         setupTableColumns();
+        
+        // Show the page straight away and load products in the background
+        if (productsTable != null) {
+            productsTable.setPlaceholder(new Label("Loading products..."));
+        }
+        PageNavigator.loadModel(StockModel::new, this::setModel, this::getStage);
     }
     
     /**
@@ -177,18 +203,21 @@ public class StockController implements Initializable {
      */
     private void setupTableView() {
         if (productsTable != null && model != null) {
-            productsTable.setItems(model.getProducts());
+            // Several rows can be selected for bulk edit and delete
+            productsTable.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
             
             // Set up selection listener
-            productsTable.getSelectionModel().selectedItemProperty().addListener((obs, oldSelection, newSelection) -> {
-                if (newSelection != null) {
-                    if (selectedProductLabel != null) {
-                        selectedProductLabel.setText(newSelection.getName() + " (" + newSelection.getSku() + ")");
-                    }
+            productsTable.getSelectionModel().getSelectedItems().addListener((ListChangeListener<Product>) change -> {
+                if (selectedProductLabel == null) {
+                    return;
+                }
+                List<Product> selected = productsTable.getSelectionModel().getSelectedItems();
+                if (selected.size() > 1) {
+                    selectedProductLabel.setText(selected.size() + " products");
+                } else if (selected.size() == 1 && selected.get(0) != null) {
+                    selectedProductLabel.setText(selected.get(0).getName() + " (" + selected.get(0).getSku() + ")");
                 } else {
-                    if (selectedProductLabel != null) {
-                        selectedProductLabel.setText("None");
-                    }
+                    selectedProductLabel.setText("None");
                 }
             });
         }
@@ -199,27 +228,59 @@ public class StockController implements Initializable {
      */
     private void bindModelToView() {
         if (model != null && productsTable != null) {
-            productsTable.setItems(model.getProducts());
+            // The table shows a live filtered view of the model list
+            search = new IncrementalSearch<>(model.getProducts(), Product::getSearchKey);
+            search.getView().comparatorProperty().bind(productsTable.comparatorProperty());
+            search.setOnChange(this::updateStatistics);
+            productsTable.setItems(search.getView());
+            
+            if (searchBox != null) {
+                searchBox.textProperty().addListener((obs, oldText, newText) -> search.schedule(newText));
+            }
+            
+            // Values are listed from the loaded products each time a filter is opened
+            if (filterBrand != null) {
+                filterBrand.setOnShowing(event -> fillAttributeFilter(filterBrand, ProductAttribute.BRAND));
+            }
+            if (filterMaterial != null) {
+                filterMaterial.setOnShowing(event -> fillAttributeFilter(filterMaterial, ProductAttribute.MATERIAL));
+            }
         }
     }
     
+    /**
+     * List the values of an attribute that loaded products have, keeping the selection
+     */
+    private void fillAttributeFilter(ComboBox<String> filter, ProductAttribute attribute) {
+        String selected = filter.getValue();
+        List<String> values = new ArrayList<>(model.countByAttribute(attribute).keySet());
+        values.removeIf(String::isEmpty);
+        values.sort(String.CASE_INSENSITIVE_ORDER);
+        filter.getItems().setAll(values);
+        filter.setValue(selected);
+    }
+    
     /**
      * Update statistics labels
      */
     private void updateStatistics() {
         if (model == null) return;
         
+        // While searching the statistics cover the visible products, otherwise the running totals
+        boolean searching = search != null && search.isActive();
+        
         if (totalProductsLabel != null) {
-            totalProductsLabel.setText(String.valueOf(model.getProducts().size()));
+            int count = searching ? search.getView().size() : model.getProducts().size();
+            totalProductsLabel.setText(String.valueOf(count));
         }
         
         if (totalValuePkrLabel != null) {
-            double totalPkr = model.calculateTotalValuePkr();
+            double totalPkr = searching ? model.calculateTotalValuePkr(search.getView()) : model.calculateTotalValuePkr();
             totalValuePkrLabel.setText(String.format("%.2f", totalPkr));
         }
         
         if (totalValueGbpLabel != null) {
-            double totalGbp = model.calculateTotalValueGbp();
+            double totalGbp = searching ? model.calculateTotalValueGbp(search.getView()) : model.calculateTotalValueGbp();
             totalValueGbpLabel.setText(String.format("%.2f", totalGbp));
         }
     }
@@ -263,6 +324,19 @@ public class StockController implements Initializable {
             return;
         }
         
+        // Several rows selected: edit them together in the bulk dialog
+        int selectedCount = productsTable.getSelectionModel().getSelectedItems().size();
+        if (selectedCount > 1) {
+            if (bulkEditInfoLabel != null) bulkEditInfoLabel.setText("Editing " + selectedCount + " products. Leave a field empty to keep it unchanged.");
+            if (bulkBrandField != null) bulkBrandField.clear();
+            if (bulkQuantityField != null) bulkQuantityField.clear();
+            if (bulkPriceField != null) bulkPriceField.clear();
+            if (bulkEditDialog != null) {
+                bulkEditDialog.setVisible(true);
+            }
+            return;
+        }
+        
         // Populate edit dialog fields
         if (editSkuField != null) editSkuField.setText(selectedProduct.getSku());
         if (editNameField != null) editNameField.setText(selectedProduct.getName());
@@ -293,8 +367,13 @@ public class StockController implements Initializable {
         }
         
         // Show product name in confirmation dialog
+        int selectedCount = productsTable.getSelectionModel().getSelectedItems().size();
         if (deleteProductNameLabel != null) {
-            deleteProductNameLabel.setText("Are you sure you want to delete: " + selectedProduct.getName() + " (" + selectedProduct.getSku() + ")?");
+            if (selectedCount > 1) {
+                deleteProductNameLabel.setText("Are you sure you want to delete " + selectedCount + " products?");
+            } else {
+                deleteProductNameLabel.setText("Are you sure you want to delete: " + selectedProduct.getName() + " (" + selectedProduct.getSku() + ")?");
+            }
         }
         
         if (deleteConfirmDialog != null) {
@@ -322,30 +401,16 @@ public class StockController implements Initializable {
     
     @FXML
     private void handleSearch() {
-        // Handle search functionality
-        if (model == null || searchBox == null) return;
-        
-        String searchText = searchBox.getText();
-        ObservableList<Product> searchResults = model.searchProducts(searchText);
-        
-        if (productsTable != null) {
-            productsTable.setItems(searchResults);
-        }
-        
-        // Update statistics for filtered results
-        if (totalProductsLabel != null) {
-            totalProductsLabel.setText(String.valueOf(searchResults.size()));
-        }
-        
-        if (totalValuePkrLabel != null) {
-            double totalPkr = model.calculateTotalValuePkr(searchResults);
-            totalValuePkrLabel.setText(String.format("%.2f", totalPkr));
-        }
+        // Typing searches after a short pause, the button searches straight away
+        if (search == null || searchBox == null) return;
         
-        if (totalValueGbpLabel != null) {
-            double totalGbp = model.calculateTotalValueGbp(searchResults);
-            totalValueGbpLabel.setText(String.format("%.2f", totalGbp));
-        }
+        // Brand and material are matched on their dictionary codes, one int comparison per product
+        Predicate<Product> brand = model.attributeFilter(ProductAttribute.BRAND,
+            filterBrand != null ? filterBrand.getValue() : null);
+        Predicate<Product> material = model.attributeFilter(ProductAttribute.MATERIAL,
+            filterMaterial != null ? filterMaterial.getValue() : null);
+        Predicate<Product> filter = brand == null ? material : material == null ? brand : brand.and(material);
+        search.apply(searchBox.getText(), filter);
     }
     
     @FXML
@@ -354,6 +419,15 @@ public class StockController implements Initializable {
         if (searchBox != null) {
             searchBox.clear();
         }
+        if (filterBrand != null) {
+            filterBrand.setValue(null);
+        }
+        if (filterMaterial != null) {
+            filterMaterial.setValue(null);
+        }
+        if (search != null) {
+            search.clear();
+        }
         
         // Refresh to show all products
         if (model != null) {
@@ -564,29 +638,33 @@ public class StockController implements Initializable {
             }
         }
         
-        // Update product fields
-        selectedProduct.setName(editNameField.getText().trim());
-        selectedProduct.setSize(editSizeField != null ? editSizeField.getText().trim() : "");
-        selectedProduct.setColor(editColorField != null ? editColorField.getText().trim() : "");
-        selectedProduct.setMaterial(editMaterialField != null ? editMaterialField.getText().trim() : "");
-        selectedProduct.setBrand(editBrandField != null ? editBrandField.getText().trim() : "");
-        selectedProduct.setBaseCostPkr(baseCost);
-        selectedProduct.setQuantity(quantity);
-        selectedProduct.setQuantitySold(quantitySold);
+        // Update fields on a copy, the model swaps it into the list once saved
+        Product updatedProduct = new Product(selectedProduct);
+        updatedProduct.setName(editNameField.getText().trim());
+        updatedProduct.setSize(editSizeField != null ? editSizeField.getText().trim() : "");
+        updatedProduct.setColor(editColorField != null ? editColorField.getText().trim() : "");
+        updatedProduct.setMaterial(editMaterialField != null ? editMaterialField.getText().trim() : "");
+        updatedProduct.setBrand(editBrandField != null ? editBrandField.getText().trim() : "");
+        updatedProduct.setBaseCostPkr(baseCost);
+        updatedProduct.setQuantity(quantity);
+        updatedProduct.setQuantitySold(quantitySold);
         
         // Update product in database
         boolean success;
         try {
-            success = model.updateProduct(selectedProduct);
+            success = model.updateProduct(updatedProduct);
         } catch (NoDatabaseConnectionException e) {
             DatabaseAccessHandler.showNoConnectionAlert(getStage());
             return;
+        } catch (ConflictingUpdateException e) {
+            showAlert(Alert.AlertType.WARNING, "Edit Conflict", e.getMessage());
+            return;
         }
         
         if (success) {
             // Log the action
-            LoggingService.log("Edited", "Stock", "Product", selectedProduct.getSku(), 
-                "Product " + selectedProduct.getSku());
+            LoggingService.log("Edited", "Stock", "Product", updatedProduct.getSku(), 
+                "Product " + updatedProduct.getSku());
             
             showAlert(Alert.AlertType.INFORMATION, "Success", "Product updated successfully");
             updateStatistics();
@@ -608,6 +686,87 @@ public class StockController implements Initializable {
         }
     }
     
+    // Bulk edit dialog handlers
+    @FXML
+    private void handleBulkEditConfirm() {
+        if (model == null || productsTable == null) {
+            showAlert(Alert.AlertType.ERROR, "Error", "Model or table not initialized");
+            return;
+        }
+        
+        List<String> skus = getSelectedSkus();
+        if (skus.isEmpty()) {
+            showAlert(Alert.AlertType.WARNING, "No Selection", "Please select the products to edit");
+            return;
+        }
+        
+        // Empty fields leave that value unchanged
+        String brand = bulkBrandField != null && !bulkBrandField.getText().trim().isEmpty()
+            ? bulkBrandField.getText().trim() : null;
+        
+        int quantityChange = 0;
+        if (bulkQuantityField != null && !bulkQuantityField.getText().trim().isEmpty()) {
+            try {
+                quantityChange = Integer.parseInt(bulkQuantityField.getText().trim().replace("+", ""));
+            } catch (NumberFormatException e) {
+                showAlert(Alert.AlertType.WARNING, "Validation Error", "Quantity change must be a whole number, e.g. 5 or -5");
+                return;
+            }
+        }
+        
+        double priceChangePercent = 0;
+        if (bulkPriceField != null && !bulkPriceField.getText().trim().isEmpty()) {
+            try {
+                priceChangePercent = Double.parseDouble(bulkPriceField.getText().trim().replace("%", ""));
+                if (priceChangePercent <= -100) {
+                    showAlert(Alert.AlertType.WARNING, "Validation Error", "Price change must be above -100%");
+                    return;
+                }
+            } catch (NumberFormatException e) {
+                showAlert(Alert.AlertType.WARNING, "Validation Error", "Price change must be a valid percentage, e.g. 10 or -25");
+                return;
+            }
+        }
+        
+        if (brand == null && quantityChange == 0 && priceChangePercent == 0) {
+            showAlert(Alert.AlertType.WARNING, "Validation Error", "Enter at least one change");
+            return;
+        }
+        
+        boolean success;
+        try {
+            success = model.bulkEditProducts(skus, brand, quantityChange, priceChangePercent);
+        } catch (NoDatabaseConnectionException e) {
+            DatabaseAccessHandler.showNoConnectionAlert(getStage());
+            return;
+        }
+        
+        if (success) {
+            // One log entry describing every change made
+            List<String> changes = new ArrayList<>();
+            if (brand != null) changes.add("brand set to " + brand);
+            if (quantityChange != 0) changes.add("quantity " + (quantityChange > 0 ? "+" : "") + quantityChange);
+            if (priceChangePercent != 0) changes.add("base cost " + (priceChangePercent > 0 ? "+" : "") + priceChangePercent + "%");
+            LoggingService.logBulk("Edited", "Stock", "Product", skus,
+                skus.size() + " products, " + String.join(", ", changes));
+            
+            showAlert(Alert.AlertType.INFORMATION, "Success", skus.size() + " products updated successfully");
+            updateStatistics();
+            if (bulkEditDialog != null) {
+                bulkEditDialog.setVisible(false);
+            }
+        } else {
+            showAlert(Alert.AlertType.ERROR, "Error", "Failed to update products");
+        }
+    }
+    
+    @FXML
+    private void handleBulkEditCancel() {
+        if (bulkEditDialog != null) {
+            bulkEditDialog.setVisible(false);
+        }
+    }
+    
     // Delete confirmation handlers
     @FXML
     private void handleDeleteConfirm() {
@@ -628,6 +787,12 @@ public class StockController implements Initializable {
             return;
         }
         
+        List<String> skus = getSelectedSkus();
+        if (skus.size() > 1) {
+            deleteSelectedProducts(skus);
+            return;
+        }
+        
         String sku = selectedProduct.getSku();
         boolean success;
         try {
@@ -652,6 +817,44 @@ public class StockController implements Initializable {
         }
     }
     
+    /**
+     * Delete all selected products with one database call and one log entry
+     */
+    private void deleteSelectedProducts(List<String> skus) {
+        boolean success;
+        try {
+            success = model.deleteProducts(skus);
+        } catch (NoDatabaseConnectionException e) {
+            DatabaseAccessHandler.showNoConnectionAlert(getStage());
+            return;
+        }
+        
+        if (success) {
+            LoggingService.logBulk("Deleted", "Stock", "Product", skus, skus.size() + " products");
+            
+            showAlert(Alert.AlertType.INFORMATION, "Success", skus.size() + " products deleted successfully");
+            updateStatistics();
+            if (deleteConfirmDialog != null) {
+                deleteConfirmDialog.setVisible(false);
+            }
+        } else {
+            showAlert(Alert.AlertType.ERROR, "Error", "Failed to delete products");
+        }
+    }
+    
+    /**
+     * Get the SKUs of all selected products
+     */
+    private List<String> getSelectedSkus() {
+        List<String> skus = new ArrayList<>();
+        for (Product product : productsTable.getSelectionModel().getSelectedItems()) {
+            if (product != null) {
+                skus.add(product.getSku());
+            }
+        }
+        return skus;
+    }
+    
     @FXML
     private void handleDeleteCancel() {
         if (deleteConfirmDialog != null) {
@@ -669,6 +872,9 @@ public class StockController implements Initializable {
             }
             return;
         }
+        if (exportTask != null) {
+            return; // Export already running
+        }
         
         try {
             // Get the stage from any node
@@ -686,44 +892,57 @@ public class StockController implements Initializable {
             // Create file chooser
             FileChooser fileChooser = new FileChooser();
             fileChooser.setTitle("Export Stock Data to CSV");
-            fileChooser.getExtensionFilters().add(
-                new FileChooser.ExtensionFilter("CSV Files", "*.csv")
+            fileChooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("CSV Files", "*.csv"),
+                new FileChooser.ExtensionFilter("Compressed CSV Files", "*.csv.gz")
             );
             fileChooser.setInitialFileName("stock_export_" + LocalDate.now().format(DateTimeFormatter.ISO_LOCAL_DATE) + ".csv");
             
             // Show save dialog
             File file = fileChooser.showSaveDialog(stage);
             
-            if (file != null) {
-                // Write CSV file
-                try (PrintWriter writer = new PrintWriter(file)) {
-                    // Write header
-                    writer.println("SKU,Name,Size,Color,Material,Brand,Base Cost (PKR),Quantity,Quantity Sold,Date Added");
-                    
-                    // Write data
-                    for (Product product : model.getProducts()) {
-                        writer.printf("%s,%s,%s,%s,%s,%s,%.2f,%d,%d,%s%n",
-                            escapeCsvField(product.getSku() != null ? product.getSku() : ""),
-                            escapeCsvField(product.getName() != null ? product.getName() : ""),
-                            escapeCsvField(product.getSize() != null ? product.getSize() : ""),
-                            escapeCsvField(product.getColor() != null ? product.getColor() : ""),
-                            escapeCsvField(product.getMaterial() != null ? product.getMaterial() : ""),
-                            escapeCsvField(product.getBrand() != null ? product.getBrand() : ""),
-                            product.getBaseCostPkr(),
-                            product.getQuantity(),
-                            product.getQuantitySold(),
-                            escapeCsvField(product.getDateAdded() != null ? product.getDateAdded() : "")
-                        );
-                    }
+            if (file == null) {
+                if (exportConfirmDialog != null) {
+                    exportConfirmDialog.setVisible(false);
                 }
-                
+                return;
+            }
+            
+            // Stream products from the database on a background task, the dialog shows progress
+            CsvExportTask<Product> task = new CsvExportTask<>(file,
+                StockModel.CSV_HEADER,
+                model::openProductCursor,
+                model::countStoredProducts,
+                (product, csv) -> csv
+                    .field(product.getSku())
+                    .field(product.getName())
+                    .field(product.getSize())
+                    .field(product.getColor())
+                    .field(product.getMaterial())
+                    .field(product.getBrand())
+                    .field(product.getBaseCostPkr(), 2)
+                    .field(product.getQuantity())
+                    .field(product.getQuantitySold())
+                    .field(product.getDateAdded()));
+            
+            task.setOnSucceeded(event -> {
+                finishExport();
                 showAlert(Alert.AlertType.INFORMATION, "Success", 
                     "Stock data exported successfully to:\n" + file.getAbsolutePath());
-            }
+            });
+            task.setOnFailed(event -> {
+                finishExport();
+                showAlert(Alert.AlertType.ERROR, "Export Error", 
+                    "Failed to export data: " + task.getException().getMessage());
+                task.getException().printStackTrace();
+            });
+            task.setOnCancelled(event -> finishExport());
             
-            if (exportConfirmDialog != null) {
-                exportConfirmDialog.setVisible(false);
+            exportTask = task;
+            if (exportInfoLabel != null) {
+                exportInfoLabel.textProperty().bind(task.messageProperty());
             }
+            CsvExportTask.start(task);
         } catch (Exception e) {
             showAlert(Alert.AlertType.ERROR, "Export Error", 
                 "Failed to export data: " + e.getMessage());
@@ -735,26 +954,124 @@ public class StockController implements Initializable {
     }
     
     /**
-     * Escape CSV field if it contains commas or quotes
+     * Close the export dialog once the export task has ended
      */
-    private String escapeCsvField(String field) {
-        if (field == null) {
-            return "";
+    private void finishExport() {
+        exportTask = null;
+        if (exportInfoLabel != null) {
+            exportInfoLabel.textProperty().unbind();
         }
-        // If field contains comma, quote, or newline, wrap in quotes and escape quotes
-        if (field.contains(",") || field.contains("\"") || field.contains("\n")) {
-            return "\"" + field.replace("\"", "\"\"") + "\"";
+        if (exportConfirmDialog != null) {
+            exportConfirmDialog.setVisible(false);
         }
-        return field;
     }
     
     @FXML
     private void handleExportCancel() {
+        if (exportTask != null) {
+            exportTask.cancel(); // Deletes the partial file
+        }
         if (exportConfirmDialog != null) {
             exportConfirmDialog.setVisible(false);
         }
     }
     
+    // Import handlers
+    @FXML
+    private void handleImport() {
+        if (model == null) {
+            showAlert(Alert.AlertType.ERROR, "Error", "Model not initialized");
+            return;
+        }
+        if (importTask != null) {
+            return; // Import already running
+        }
+        
+        Stage stage = getStage();
+        if (stage == null) {
+            showAlert(Alert.AlertType.ERROR, "Error", "Could not access window");
+            return;
+        }
+        
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Import Stock Data from CSV");
+        fileChooser.getExtensionFilters().addAll(
+            new FileChooser.ExtensionFilter("CSV Files", "*.csv", "*.csv.gz")
+        );
+        File file = fileChooser.showOpenDialog(stage);
+        if (file == null) {
+            return;
+        }
+        
+        // Rows are validated in parallel and inserted in unordered batches on a background task
+        CsvImportTask<Product> task = new CsvImportTask<>(file,
+            StockModel.CSV_HEADER,
+            StockModel::parseCsvRow,
+            Product::getSku,
+            model::insertProducts);
+        
+        task.setOnSucceeded(event -> {
+            CsvImportTask.Report report = task.getValue();
+            finishImport();
+            LoggingService.log("Imported", "Stock", "Product", file.getName(), 
+                report + " from " + file.getName());
+            showImportReport(report);
+        });
+        task.setOnFailed(event -> {
+            finishImport();
+            showAlert(Alert.AlertType.ERROR, "Import Error", 
+                "Failed to import data: " + task.getException().getMessage());
+            task.getException().printStackTrace();
+        });
+        task.setOnCancelled(event -> finishImport());
+        
+        importTask = task;
+        if (importBtn != null) {
+            importBtn.setDisable(true);
+            importBtn.textProperty().bind(task.messageProperty());
+        }
+        CsvImportTask.start(task);
+    }
+    
+    /**
+     * Reload the products once and restore the import button after an import has ended
+     */
+    private void finishImport() {
+        importTask = null;
+        if (importBtn != null) {
+            importBtn.textProperty().unbind();
+            importBtn.setText("Import CSV");
+            importBtn.setDisable(false);
+        }
+        try {
+            model.loadProducts();
+        } catch (NoDatabaseConnectionException e) {
+            DatabaseAccessHandler.showNoConnectionAlert(getStage());
+            return;
+        }
+        updateStatistics();
+        if (productsTable != null) {
+            productsTable.refresh();
+        }
+    }
+    
+    /**
+     * Show the import summary with the first rejected rows
+     */
+    private void showImportReport(CsvImportTask.Report report) {
+        StringBuilder message = new StringBuilder(report.toString());
+        List<String> errors = report.getErrors();
+        int shown = Math.min(errors.size(), MAX_SHOWN_IMPORT_ERRORS);
+        for (int i = 0; i < shown; i++) {
+            message.append('\n').append(errors.get(i));
+        }
+        if (report.getRejected() > shown) {
+            message.append("\n... and ").append(report.getRejected() - shown).append(" more");
+        }
+        showAlert(report.getRejected() == 0 ? Alert.AlertType.INFORMATION : Alert.AlertType.WARNING,
+            "Import Finished", message.toString());
+    }
+    
     // Navigation handlers
     @FXML
     private void handleStockButton() {
@@ -799,40 +1116,7 @@ public class StockController implements Initializable {
             // Cleanup current controller if needed
             cleanup();
             
-            // Load the new view
-            FXMLLoader loader = new FXMLLoader(getClass().getResource(fxmlPath));
-            Parent root = loader.load();
-            
-            // Special handling for stock page - initialize model
-            if (fxmlPath.contains("stock.fxml")) {
-                StockController controller = loader.getController();
-                StockModel model = new StockModel();
-                controller.setModel(model);
-            }
-            
-            // Get the stage and switch scene
-            Stage stage = (Stage) (productsTable != null ? productsTable.getScene().getWindow() : 
-                                  (addProductBtn != null ? addProductBtn.getScene().getWindow() : null));
-            
-            if (stage != null) {
-                // Determine scene dimensions based on page
-                double width = 1100;
-                double height = 700;
-                if (fxmlPath.contains("homepage.fxml")) {
-                    width = 1100;
-                    height = 700;
-                }
-                
-                Scene scene = new Scene(root, width, height);
-                stage.setScene(scene);
-                stage.setTitle(title);
-                
-                // Force layout recalculation
-                Platform.runLater(() -> {
-                    stage.sizeToScene();
-                    root.requestLayout();
-                });
-            }
+            PageNavigator.navigateTo(getStage(), getClass().getResource(fxmlPath), title);
         } catch (Exception e) {
             showAlert(Alert.AlertType.ERROR, "Navigation Error", 
                 "Failed to navigate to " + title + ": " + e.getMessage());
@@ -1,22 +1,60 @@
 package features.stock;
 
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateManyModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.result.UpdateResult;
+import core.AttributeDictionary;
+import core.CompensatedSum;
 import core.ConfigManager;
+import core.ConflictingUpdateException;
 import core.Connection;
+import core.CsvImportTask;
+import core.FieldChanges;
 import core.NoDatabaseConnectionException;
 import dev.morphia.Datastore;
+import dev.morphia.InsertManyOptions;
+import dev.morphia.query.FindOptions;
 import dev.morphia.query.Query;
+import dev.morphia.query.internal.MorphiaCursor;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
 
 /**
  * Model for the stock feature
  * Holds the application state and business logic
  */
 public class StockModel {
+    private static final int EXPORT_BATCH_SIZE = 1000;
+    
+    /** Columns of the stock CSV, shared by export and import */
+    public static final String CSV_HEADER =
+            "SKU,Name,Size,Color,Material,Brand,Base Cost (PKR),Quantity,Quantity Sold,Date Added";
+    
     private Datastore datastore;
     private ObservableList<Product> products;
+    // Running total of the loaded products' base cost, kept in step by updateTotals
+    private final CompensatedSum totalValuePkr = new CompensatedSum();
     
     public StockModel() {
         // Check if database is connected
@@ -32,19 +70,41 @@ public class StockModel {
         
         // Initialize observable list for products
         products = FXCollections.observableArrayList();
+        products.addListener(this::updateTotals);
         
         // Load initial products
         loadProducts();
     }
     
+    /**
+     * Create a model over products already in memory, without a database connection
+     * Used by the benchmarks, methods that write to the database throw NoDatabaseConnectionException
+     * @param productList The products to hold
+     */
+    public StockModel(List<Product> productList) {
+        products = FXCollections.observableArrayList();
+        products.addListener(this::updateTotals);
+        for (Product product : productList) {
+            product.internAttributes();
+        }
+        products.addAll(productList);
+    }
+    
     /**
      * Load all products from MongoDB
      */
     public void loadProducts() {
         try {
-            List<Product> productList = datastore.find(Product.class).iterator().toList();
+            // Decoded by ProductCodec unless entity codecs are switched off
+            List<Product> productList = Connection.getInstance().getCollection(Product.class)
+                    .find().into(new ArrayList<>());
+            // Repeated size, color, material and brand values share one String each
+            for (Product product : productList) {
+                product.internAttributes();
+            }
             products.clear();
             products.addAll(productList);
+            ProductCache.getInstance().replaceAll(productList);
         } catch (Exception e) {
             System.err.println("Error loading products: " + e.getMessage());
             e.printStackTrace();
@@ -61,19 +121,15 @@ public class StockModel {
             throw new NoDatabaseConnectionException();
         }
         try {
-            // Check if SKU already exists
-            Product existing = datastore.find(Product.class)
-                    .filter("sku", product.getSku())
-                    .first();
-            
-            if (existing != null) {
-                return false; // SKU already exists
-            }
-            
-            datastore.save(product);
-            loadProducts(); // Reload to update observable list
+            // The unique index on sku rejects duplicates in the same round trip
+            datastore.insert(product);
+            products.add(product);
+            ProductCache.getInstance().put(product);
             return true;
         } catch (Exception e) {
+            if (Connection.isDuplicateKeyError(e)) {
+                return false; // SKU already exists
+            }
             System.err.println("Error adding product: " + e.getMessage());
             e.printStackTrace();
             return false;
@@ -82,17 +138,39 @@ public class StockModel {
     
     /**
      * Update an existing product in the database
-     * @param product The product to update
+     * Only the fields changed since the product was loaded are written, so two users editing
+     * different fields of the same product don't overwrite each other
+     * @param product The updated copy of a loaded product
      * @return true if successful, false otherwise
+     * @throws ConflictingUpdateException if the product was deleted, or changed since it was loaded with version checks on
      */
     public boolean updateProduct(Product product) {
         if (datastore == null) {
             throw new NoDatabaseConnectionException();
         }
         try {
-            datastore.save(product);
-            loadProducts(); // Reload to update observable list
+            Product loaded = findLoadedProduct(product);
+            if (loaded == null) {
+                // Nothing to compare against, so the whole product is written as before
+                datastore.save(product);
+            } else {
+                FieldChanges changes = product.changesSince(loaded);
+                if (changes.isEmpty()) {
+                    return true;
+                }
+                Bson filter = FieldChanges.filter(product.getId(),
+                        ConfigManager.isVersionCheckEnabled() ? product.getVersion() : -1);
+                UpdateResult result = Connection.getInstance().getCollection(Product.class).updateOne(filter, changes.toUpdate());
+                if (result.getMatchedCount() == 0) {
+                    throw new ConflictingUpdateException("Product " + product.getSku());
+                }
+                product.setVersion(product.getVersion() + 1);
+            }
+            replaceInList(product);
+            ProductCache.getInstance().put(product);
             return true;
+        } catch (ConflictingUpdateException e) {
+            throw e;
         } catch (Exception e) {
             System.err.println("Error updating product: " + e.getMessage());
             e.printStackTrace();
@@ -112,7 +190,8 @@ public class StockModel {
         try {
             Query<Product> query = datastore.find(Product.class).filter("sku", sku);
             datastore.delete(query);
-            loadProducts(); // Reload to update observable list
+            removeFromList(sku);
+            ProductCache.getInstance().remove(sku);
             return true;
         } catch (Exception e) {
             System.err.println("Error deleting product: " + e.getMessage());
@@ -121,6 +200,145 @@ public class StockModel {
         }
     }
     
+    /**
+     * Delete several products with a single deleteMany
+     * The loaded list is patched in one change instead of reloading the collection
+     * @param skus The SKUs of the products to delete
+     * @return true if successful, false otherwise
+     */
+    public boolean deleteProducts(Collection<String> skus) {
+        if (datastore == null) {
+            throw new NoDatabaseConnectionException();
+        }
+        if (skus.isEmpty()) {
+            return true;
+        }
+        try {
+            Connection.getInstance().getCollection(Product.class).deleteMany(Filters.in("sku", skus));
+            Set<String> deleted = new HashSet<>(skus);
+            List<Product> kept = new ArrayList<>(products.size());
+            for (Product product : products) {
+                if (!deleted.contains(product.getSku())) {
+                    kept.add(product);
+                }
+            }
+            // One setAll instead of removeAll, which shifts the backing list once per removed row
+            products.setAll(kept);
+            for (String sku : deleted) {
+                ProductCache.getInstance().remove(sku);
+            }
+            return true;
+        } catch (Exception e) {
+            System.err.println("Error deleting products: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+    
+    /**
+     * Apply the same edits to several products in a single bulkWrite
+     * Each edit is one update over all the SKUs, then the changed products are read back
+     * with one query and patched into the loaded list in one change
+     * @param skus The SKUs of the products to edit
+     * @param brand New brand, or null to leave it unchanged
+     * @param quantityChange Units to add to (or take from, if negative) each quantity, stops at 0
+     * @param priceChangePercent Percentage to raise (or lower, if negative) each base cost by
+     * @return true if successful, false otherwise
+     */
+    public boolean bulkEditProducts(Collection<String> skus, String brand, int quantityChange,
+                                    double priceChangePercent) {
+        if (datastore == null) {
+            throw new NoDatabaseConnectionException();
+        }
+        Bson bySku = Filters.in("sku", skus);
+        Document nextVersion = new Document("$add", Arrays.asList(
+                new Document("$ifNull", Arrays.asList("$" + FieldChanges.VERSION_FIELD, 0L)), 1L));
+        List<WriteModel<Product>> edits = new ArrayList<>();
+        if (brand != null) {
+            edits.add(new UpdateManyModel<>(bySku, Updates.combine(
+                    Updates.set("brand", brand), Updates.inc(FieldChanges.VERSION_FIELD, 1L))));
+        }
+        if (quantityChange != 0) {
+            // Pipeline update so quantities are clamped at 0 on the server
+            Document quantity = new Document("quantity", new Document("$max", Arrays.asList(0,
+                    new Document("$add", Arrays.asList("$quantity", quantityChange)))));
+            edits.add(new UpdateManyModel<>(bySku, Arrays.asList(
+                    new Document("$set", quantity.append(FieldChanges.VERSION_FIELD, nextVersion)))));
+        }
+        if (priceChangePercent != 0) {
+            Document price = new Document("baseCostPkr", new Document("$round", Arrays.asList(
+                    new Document("$multiply", Arrays.asList("$baseCostPkr", 1 + priceChangePercent / 100)), 2)));
+            edits.add(new UpdateManyModel<>(bySku, Arrays.asList(
+                    new Document("$set", price.append(FieldChanges.VERSION_FIELD, nextVersion)))));
+        }
+        if (skus.isEmpty() || edits.isEmpty()) {
+            return true;
+        }
+        try {
+            MongoCollection<Product> collection = Connection.getInstance().getCollection(Product.class);
+            collection.bulkWrite(edits);
+            
+            Map<ObjectId, Product> updated = new HashMap<>();
+            for (Product product : collection.find(bySku)) {
+                product.internAttributes();
+                updated.put(product.getId(), product);
+                ProductCache.getInstance().put(product);
+            }
+            List<Product> patched = new ArrayList<>(products.size());
+            for (Product product : products) {
+                patched.add(updated.getOrDefault(product.getId(), product));
+            }
+            products.setAll(patched);
+            return true;
+        } catch (Exception e) {
+            System.err.println("Error editing products: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+    
+    /**
+     * Find the loaded copy of a product by id
+     * @param product The product
+     * @return The product as loaded, or null if it isn't in the list
+     */
+    private Product findLoadedProduct(Product product) {
+        for (Product loaded : products) {
+            if (product.getId() != null && product.getId().equals(loaded.getId())) {
+                return loaded;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Replace the product with the same id in the observable list
+     * Fires a single replace change instead of reloading the collection
+     * @param product The updated product
+     */
+    private void replaceInList(Product product) {
+        for (int i = 0; i < products.size(); i++) {
+            if (product.getId() != null && product.getId().equals(products.get(i).getId())) {
+                products.set(i, product);
+                return;
+            }
+        }
+        products.add(product);
+    }
+    
+    /**
+     * Remove the product with the given SKU from the observable list
+     * @param sku The SKU of the removed product
+     */
+    private void removeFromList(String sku) {
+        for (int i = 0; i < products.size(); i++) {
+            if (sku != null && sku.equals(products.get(i).getSku())) {
+                products.remove(i);
+                return;
+            }
+        }
+    }
+    
     /**
      * Search products by SKU, name, or brand
      * @param query The search query string
@@ -135,9 +353,7 @@ public class StockModel {
         ObservableList<Product> results = FXCollections.observableArrayList();
         
         for (Product product : products) {
-            if ((product.getSku() != null && product.getSku().toLowerCase().contains(searchTerm)) ||
-                (product.getName() != null && product.getName().toLowerCase().contains(searchTerm)) ||
-                (product.getBrand() != null && product.getBrand().toLowerCase().contains(searchTerm))) {
+            if (product.getSearchKey().contains(searchTerm)) {
                 results.add(product);
             }
         }
@@ -145,6 +361,142 @@ public class StockModel {
         return results;
     }
     
+    /**
+     * Build a condition matching products with an attribute value, e.g. one brand
+     * The value is looked up once, so each product is checked with an int comparison
+     * @param attribute The attribute to filter on
+     * @param value The exact value, or null or empty for no condition
+     * @return The condition, or null if there is nothing to filter on
+     */
+    public Predicate<Product> attributeFilter(ProductAttribute attribute, String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        int code = attribute.getDictionary().lookup(value);
+        if (code == AttributeDictionary.NO_CODE) {
+            return product -> false; // No product has ever had this value
+        }
+        return product -> product.getAttributeCode(attribute) == code;
+    }
+    
+    /**
+     * Filter products by an attribute value, e.g. all products of one brand
+     * Compares dictionary codes, so no strings are compared per product
+     * @param attribute The attribute to filter on
+     * @param value The exact value
+     * @return List of matching products
+     */
+    public ObservableList<Product> filterByAttribute(ProductAttribute attribute, String value) {
+        Predicate<Product> filter = attributeFilter(attribute, value);
+        if (filter == null) {
+            return products;
+        }
+        
+        ObservableList<Product> results = FXCollections.observableArrayList();
+        for (Product product : products) {
+            if (filter.test(product)) {
+                results.add(product);
+            }
+        }
+        
+        return results;
+    }
+    
+    /**
+     * Count products per value of an attribute in one pass
+     * @param attribute The attribute to group by
+     * @return Product count by value, for values that at least one product has
+     */
+    public Map<String, Integer> countByAttribute(ProductAttribute attribute) {
+        AttributeDictionary dictionary = attribute.getDictionary();
+        // One slot per dictionary code, so grouping is an array index instead of a map lookup
+        int[] counts = new int[dictionary.size()];
+        for (Product product : products) {
+            int code = product.getAttributeCode(attribute);
+            if (code != AttributeDictionary.NO_CODE && code < counts.length) {
+                counts[code]++;
+            }
+        }
+        
+        Map<String, Integer> results = new LinkedHashMap<>();
+        List<String> values = dictionary.values();
+        for (int code = 0; code < counts.length; code++) {
+            if (counts[code] > 0) {
+                results.put(values.get(code), counts[code]);
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * Open a cursor over all stored products for streaming exports
+     * Documents are fetched from the server in batches as the cursor is read
+     * @return Cursor over all products, to be closed by the caller
+     */
+    public MorphiaCursor<Product> openProductCursor() {
+        if (datastore == null) {
+            throw new NoDatabaseConnectionException();
+        }
+        return datastore.find(Product.class).iterator(new FindOptions().batchSize(EXPORT_BATCH_SIZE));
+    }
+    
+    /**
+     * Count stored products from collection metadata
+     * @return Approximate product count
+     */
+    public long countStoredProducts() {
+        if (datastore == null) {
+            throw new NoDatabaseConnectionException();
+        }
+        return Connection.getInstance().getCollection(Product.class).estimatedDocumentCount();
+    }
+    
+    /**
+     * Build a product from a row of the stock CSV
+     * Applies the same checks as the add dialog, safe to call from several threads
+     * @param fields The row's fields in CSV_HEADER order
+     * @return The product
+     * @throws IllegalArgumentException if the row is invalid
+     */
+    public static Product parseCsvRow(List<String> fields) {
+        return new Product(
+            CsvImportTask.requireText(fields, 0, "SKU"),
+            CsvImportTask.requireText(fields, 1, "Name"),
+            CsvImportTask.text(fields, 2),
+            CsvImportTask.text(fields, 3),
+            CsvImportTask.text(fields, 4),
+            CsvImportTask.text(fields, 5),
+            CsvImportTask.parseNumber(fields, 6, "Base Cost", null),
+            CsvImportTask.parseWholeNumber(fields, 7, "Quantity"),
+            CsvImportTask.parseWholeNumber(fields, 8, "Quantity Sold"),
+            CsvImportTask.parseDate(fields, 9, "Date Added", true)
+        );
+    }
+    
+    /**
+     * Insert a batch of imported products with one unordered insertMany
+     * Rows whose SKU already exists are rejected by the unique index without stopping the rest
+     * @param batch The products to insert
+     * @return Rejected rows as batch index to reason, empty if all were inserted
+     */
+    public Map<Integer, String> insertProducts(List<Product> batch) {
+        if (datastore == null) {
+            throw new NoDatabaseConnectionException();
+        }
+        Map<Integer, String> rejected = new HashMap<>();
+        try {
+            datastore.insert(batch, new InsertManyOptions().ordered(false));
+        } catch (MongoBulkWriteException e) {
+            for (BulkWriteError error : e.getWriteErrors()) {
+                String reason = error.getCategory() == ErrorCategory.DUPLICATE_KEY
+                        ? "SKU " + batch.get(error.getIndex()).getSku() + " already exists"
+                        : error.getMessage();
+                rejected.put(error.getIndex(), reason);
+            }
+        }
+        return rejected;
+    }
+    
     /**
      * Get all products
      * @return ObservableList of all products
@@ -153,14 +505,33 @@ public class StockModel {
         return products;
     }
     
+    /**
+     * Keep the running total in step with the products list
+     * Each change only adds or subtracts the affected products, so the total stays O(1) to read
+     */
+    private void updateTotals(ListChangeListener.Change<? extends Product> change) {
+        while (change.next()) {
+            if (change.wasPermutated() || change.wasUpdated()) {
+                continue;
+            }
+            for (Product removed : change.getRemoved()) {
+                totalValuePkr.subtract(removed.getBaseCostPkr());
+            }
+            for (Product added : change.getAddedSubList()) {
+                totalValuePkr.add(added.getBaseCostPkr());
+            }
+        }
+        if (products.isEmpty()) {
+            totalValuePkr.reset(); // Start a reload from exact zero
+        }
+    }
+    
     /**
      * Calculate total value in PKR
      * @return Total value in PKR
      */
     public double calculateTotalValuePkr() {
-        return products.stream()
-                .mapToDouble(Product::getBaseCostPkr)
-                .sum();
+        return totalValuePkr.get();
     }
     
     /**
@@ -178,6 +549,9 @@ public class StockModel {
      * @return Total value in PKR
      */
     public double calculateTotalValuePkr(ObservableList<Product> productList) {
+        if (productList == products) {
+            return totalValuePkr.get(); // An empty search returns the full list
+        }
         return productList.stream()
                 .mapToDouble(Product::getBaseCostPkr)
                 .sum();